@@ -1,6 +1,8 @@
 package com.sodonnell.rocksdb;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 import java.util.Random;
 
@@ -15,6 +17,14 @@ public class ByteUtils {
     return result;
   }
 
+  // Writes the long big endian into dest, in the same format as longToBytes.
+  public static void longToBytes(long l, byte[] dest, int offset) {
+    for (int i = offset + 7; i >= offset; i--) {
+      dest[i] = (byte)(l & 0xFF);
+      l >>= 8;
+    }
+  }
+
   public static byte[] longToBytesWithPadding(long l, int padLength) {
     byte[] bytes = new byte[padLength + Long.BYTES];
     new Random().nextBytes(bytes);
@@ -34,6 +44,12 @@ public class ByteUtils {
     return result;
   }
 
+  // Reads a long written by longToBytes, whatever the byte order of the buffer.
+  public static long bytesToLong(ByteBuffer buf, int index) {
+    long l = buf.getLong(index);
+    return buf.order() == ByteOrder.BIG_ENDIAN ? l : Long.reverseBytes(l);
+  }
+
   public static byte[] dirBytes(long id, String dir) {
     byte[] longBytes = ByteUtils.longToBytes(id);
     byte[] stringBytes;
@@ -47,4 +63,72 @@ public class ByteUtils {
     return result;
   }
 
+  public static byte[] dirBytes(long id, String dir, KeyEncoding encoding) {
+    byte[] longBytes = ByteUtils.longToBytes(id);
+    byte[] stringBytes = encoding.encodeName(dir);
+    byte[] result = Arrays.copyOf(longBytes, longBytes.length + stringBytes.length);
+    System.arraycopy(stringBytes, 0, result, longBytes.length, stringBytes.length);
+    return result;
+  }
+
+  // Unsigned lexicographic comparison, which is the order RocksDB sorts keys.
+  public static int compare(byte[] a, byte[] b) {
+    int len = Math.min(a.length, b.length);
+    for (int i=0; i<len; i++) {
+      int cmp = (a[i] & 0xFF) - (b[i] & 0xFF);
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return a.length - b.length;
+  }
+
+  public static int varIntSize(int value) {
+    int size = 1;
+    while ((value & ~0x7F) != 0) {
+      value >>>= 7;
+      size++;
+    }
+    return size;
+  }
+
+  // Writes the value 7 bits at a time, with the high bit set on all but the
+  // last byte. Returns the number of bytes written.
+  public static int writeVarInt(int value, byte[] dest, int offset) {
+    int pos = offset;
+    while ((value & ~0x7F) != 0) {
+      dest[pos++] = (byte)((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    dest[pos++] = (byte)value;
+    return pos - offset;
+  }
+
+  public static int readVarInt(byte[] src, int offset) {
+    int result = 0;
+    int shift = 0;
+    while (true) {
+      byte b = src[offset++];
+      result |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return result;
+      }
+      shift += 7;
+    }
+  }
+
+  // Reads a varint from the buffer position, and moves the position past it.
+  public static int readVarInt(ByteBuffer src) {
+    int result = 0;
+    int shift = 0;
+    while (true) {
+      byte b = src.get();
+      result |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return result;
+      }
+      shift += 7;
+    }
+  }
+
 }
@@ -0,0 +1,139 @@
+package com.sodonnell.rocksdb;
+
+import org.rocksdb.DirectSlice;
+import org.rocksdb.ReadOptions;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+
+import java.nio.ByteBuffer;
+
+// Lists the children of a directory with a scan over the keys starting with
+// its parent ID. The iterator is bounded by the next parent ID, so it stops at
+// the last child rather than reading into the next directory. The iterator,
+// bound and buffers are created once and reused for every listing, so a
+// lister is not thread safe - each listing thread needs its own from
+// RocksDBTable.newLister().
+public class DirectoryLister implements AutoCloseable {
+
+  public interface ChildVisitor {
+    // The name buffer holds the encoded name of the child and the value buffer
+    // its value, each between the position and limit. Both buffers are reused
+    // for the next child.
+    void visit(ByteBuffer name, ByteBuffer value);
+  }
+
+  private final RocksDBTable table;
+  private final ReadOptions readOptions;
+  // The upper bound is read by RocksDB from this buffer on every seek, so it
+  // is changed in place for each listing rather than creating a new iterator.
+  private final ByteBuffer upperBound = ByteBuffer.allocateDirect(Long.BYTES);
+  private final DirectSlice upperBoundSlice;
+  private final RocksIterator iterator;
+  // The last sequence number the iterator has seen. The iterator reads a fixed
+  // view of the table, so it is refreshed when anything has been written.
+  private long sequenceNumber;
+  private ByteBuffer seekKey = ByteBuffer.allocateDirect(64);
+  private ByteBuffer key = ByteBuffer.allocateDirect(64);
+  private ByteBuffer value = ByteBuffer.allocateDirect(256);
+  private int listed = 0;
+
+  DirectoryLister(RocksDBTable table) {
+    this.table = table;
+    upperBoundSlice = new DirectSlice(upperBound, Long.BYTES);
+    readOptions = new ReadOptions()
+        .setIterateUpperBound(upperBoundSlice)
+        .setPrefixSameAsStart(true)
+        .setReadaheadSize(table.getConfig().getListReadaheadKB() * 1024L);
+    sequenceNumber = table.db.getLatestSequenceNumber();
+    iterator = table.db.newIterator(readOptions);
+  }
+
+  // Visits up to limit children of the directory, in key order, starting after
+  // the child with the encoded name startAfter, or at the first child if it is
+  // null. Returns the number of children visited. A listing can be continued
+  // from lastName() when this returns limit.
+  public int listChildren(long parentId, byte[] startAfter, int limit, ChildVisitor visitor)
+      throws RocksDBException {
+    refreshIfChanged();
+    // Keys sort as unsigned bytes, so parentId + 1 is the next prefix
+    upperBound.putLong(0, parentId + 1);
+    int seekLength = Long.BYTES + (startAfter == null ? 0 : startAfter.length);
+    if (seekKey.capacity() < seekLength) {
+      seekKey = ByteBuffer.allocateDirect(seekLength * 2);
+    }
+    seekKey.clear();
+    seekKey.putLong(parentId);
+    if (startAfter != null) {
+      seekKey.put(startAfter);
+    }
+    seekKey.flip();
+    iterator.seek(seekKey);
+    seekKey.rewind();
+
+    listed = 0;
+    boolean skipStart = startAfter != null;
+    while (listed < limit && iterator.isValid()) {
+      readKey();
+      if (skipStart) {
+        skipStart = false;
+        if (key.equals(seekKey)) {
+          iterator.next();
+          continue;
+        }
+      }
+      readValue();
+      key.position(Long.BYTES);
+      visitor.visit(key, value);
+      listed++;
+      iterator.next();
+    }
+    iterator.status();
+    return listed;
+  }
+
+  // The encoded name of the last child visited by the last listing, or null
+  // if it visited none.
+  public byte[] lastName() {
+    if (listed == 0) {
+      return null;
+    }
+    byte[] name = new byte[key.limit() - Long.BYTES];
+    key.duplicate().position(Long.BYTES).get(name);
+    return name;
+  }
+
+  private void refreshIfChanged() throws RocksDBException {
+    long latest = table.db.getLatestSequenceNumber();
+    if (latest != sequenceNumber) {
+      iterator.refresh();
+      sequenceNumber = latest;
+    }
+  }
+
+  private void readKey() {
+    key.clear();
+    int size = iterator.key(key);
+    if (size > key.capacity()) {
+      key = ByteBuffer.allocateDirect(size * 2);
+      iterator.key(key);
+    }
+  }
+
+  private void readValue() {
+    value.clear();
+    int size = iterator.value(value);
+    if (size > value.capacity()) {
+      value = ByteBuffer.allocateDirect(size * 2);
+      iterator.value(value);
+    }
+  }
+
+  @Override
+  public void close() {
+    table.removeLister(this);
+    iterator.close();
+    readOptions.close();
+    upperBoundSlice.close();
+  }
+
+}
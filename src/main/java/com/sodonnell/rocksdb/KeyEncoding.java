@@ -0,0 +1,67 @@
+package com.sodonnell.rocksdb;
+
+import java.nio.charset.StandardCharsets;
+
+// How the directory name is written after the 8 byte parent ID in a key. The
+// parent ID is always first, so all children of a directory share a prefix
+// whatever the encoding.
+public enum KeyEncoding {
+
+  // The original encoding - 2 bytes per character.
+  UTF_16BE {
+    @Override
+    public byte[] encodeName(String name) {
+      return name.getBytes(StandardCharsets.UTF_16BE);
+    }
+
+    @Override
+    public String decodeName(byte[] key, int offset, int length) {
+      return new String(key, offset + Long.BYTES, length - Long.BYTES, StandardCharsets.UTF_16BE);
+    }
+  },
+
+  UTF_8 {
+    @Override
+    public byte[] encodeName(String name) {
+      return name.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String decodeName(byte[] key, int offset, int length) {
+      return new String(key, offset + Long.BYTES, length - Long.BYTES, StandardCharsets.UTF_8);
+    }
+  },
+
+  // The UTF-8 name preceded by its length as a varint. Names of the same
+  // length sort together, rather than in string order.
+  VARINT_UTF_8 {
+    @Override
+    public byte[] encodeName(String name) {
+      byte[] utf8 = name.getBytes(StandardCharsets.UTF_8);
+      int lengthBytes = ByteUtils.varIntSize(utf8.length);
+      byte[] result = new byte[lengthBytes + utf8.length];
+      ByteUtils.writeVarInt(utf8.length, result, 0);
+      System.arraycopy(utf8, 0, result, lengthBytes, utf8.length);
+      return result;
+    }
+
+    @Override
+    public String decodeName(byte[] key, int offset, int length) {
+      int pos = offset + Long.BYTES;
+      int nameLength = ByteUtils.readVarInt(key, pos);
+      pos += ByteUtils.varIntSize(nameLength);
+      return new String(key, pos, nameLength, StandardCharsets.UTF_8);
+    }
+  };
+
+  // Encodes the name part of the key, which follows the parent ID.
+  public abstract byte[] encodeName(String name);
+
+  // Decodes the name from a full key, including the parent ID.
+  public abstract String decodeName(byte[] key, int offset, int length);
+
+  public String decodeName(byte[] key) {
+    return decodeName(key, 0, key.length);
+  }
+
+}
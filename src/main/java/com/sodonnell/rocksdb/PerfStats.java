@@ -0,0 +1,94 @@
+package com.sodonnell.rocksdb;
+
+import org.rocksdb.PerfContext;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.LongAdder;
+
+// Adds up the RocksDB perf context of each lookup against the tree depth of
+// the lookup, to show where the time goes at each level - the block cache,
+// index and filter blocks, the memtable or reading blocks from the SST files.
+// The walker sets the depth of the calling thread before each lookup. Lookups
+// made outside a walk are counted against depth 0.
+//
+// The counts are collected at any perf level above DISABLE, but the times are
+// only collected from ENABLE_TIME_EXCEPT_FOR_MUTEX up.
+public class PerfStats {
+
+  // Deeper lookups are counted against the last depth
+  public static final int MAX_DEPTH = 64;
+
+  private static final String[] METRICS = {
+      "lookups", "cacheHit", "blockRead", "readBytes", "readNs", "indexNs", "filterNs",
+      "memtableNs", "sstNs", "bloomHit", "bloomMiss"
+  };
+  private static final int LOOKUPS = 0;
+
+  private final LongAdder[][] depths = new LongAdder[MAX_DEPTH + 1][METRICS.length];
+  private final ThreadLocal<int[]> currentDepth = ThreadLocal.withInitial(() -> new int[1]);
+
+  public PerfStats() {
+    for (LongAdder[] depth : depths) {
+      for (int i=0; i<depth.length; i++) {
+        depth[i] = new LongAdder();
+      }
+    }
+  }
+
+  // The depth of the lookups the calling thread makes next.
+  public void setDepth(int depth) {
+    currentDepth.get()[0] = Math.min(depth, MAX_DEPTH);
+  }
+
+  // Adds the perf context of the lookup just made by the calling thread.
+  public void record(PerfContext ctx) {
+    record(ctx, 1);
+  }
+
+  // Adds the perf context of a multiGet of lookupCount keys, all at the
+  // current depth, as the rounds of a batched walk are.
+  public void record(PerfContext ctx, int lookupCount) {
+    LongAdder[] d = depths[currentDepth.get()[0]];
+    d[LOOKUPS].add(lookupCount);
+    d[1].add(ctx.getBlockCacheHitCount());
+    d[2].add(ctx.getBlockReadCount());
+    d[3].add(ctx.getBlockReadByte());
+    d[4].add(ctx.getBlockReadTime());
+    d[5].add(ctx.getReadIndexBlockNanos());
+    d[6].add(ctx.getReadFilterBlockNanos());
+    d[7].add(ctx.getFromMemtableTime());
+    d[8].add(ctx.getFromOutputFilesTime());
+    d[9].add(ctx.getBloomSstHitCount());
+    d[10].add(ctx.getBloomSstMissCount());
+  }
+
+  public void reset() {
+    for (LongAdder[] depth : depths) {
+      for (LongAdder a : depth) {
+        a.reset();
+      }
+    }
+  }
+
+  // Prints the number of lookups at each depth, and the average of each
+  // counter per lookup.
+  public void print(PrintStream out) {
+    StringBuilder header = new StringBuilder(String.format("%-6s", "depth"));
+    for (String m : METRICS) {
+      header.append(String.format(" %11s", m));
+    }
+    out.println(header);
+    for (int i=0; i<depths.length; i++) {
+      long lookups = depths[i][LOOKUPS].sum();
+      if (lookups == 0) {
+        continue;
+      }
+      StringBuilder line = new StringBuilder(String.format("%-6d %11d", i, lookups));
+      for (int m=1; m<METRICS.length; m++) {
+        line.append(String.format(" %11.2f", (double)depths[i][m].sum() / lookups));
+      }
+      out.println(line);
+    }
+  }
+
+}
@@ -1,8 +1,15 @@
 package com.sodonnell.rocksdb;
 
 import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.BloomFilter;
+import org.rocksdb.Cache;
+import org.rocksdb.FlushOptions;
+import org.rocksdb.IngestExternalFileOptions;
 import org.rocksdb.LRUCache;
 import org.rocksdb.Options;
+import org.rocksdb.PerfContext;
+import org.rocksdb.PerfLevel;
+import org.rocksdb.ReadOptions;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
 import org.rocksdb.Statistics;
@@ -12,28 +19,82 @@ import org.rocksdb.util.SizeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class RocksDBTable {
+
+  // Table metadata is stored under keys starting with this parent ID, which is
+  // never allocated to a directory. It sorts after all the directory entries.
+  public static final long META_PARENT_ID = -1L;
+  public static final String KEY_ENCODING_META = "keyEncoding";
+
   File dbDir;
+  TableConfig config;
   RocksDB db;
-  LRUCache blockCache;
+  Options options;
+  ReadOptions readOptions;
+  Cache blockCache;
+  // Only set when a bloom filter is configured
+  BloomFilter bloomFilter;
+  // Set when the cache and write buffer manager are shared with other tables
+  SharedMemory sharedMemory;
   Statistics statistics;
+  StatsReporter statsReporter;
+  WalkMetrics walkMetrics;
+  ObjectName mbeanName;
+  // Only set when a perf level is configured
+  PerfStats perfStats;
+  // Only set when a trace directory is configured
+  TraceWriter traceWriter;
+  // The perf context and level are per thread in RocksDB
+  private final ThreadLocal<PerfContext> perfContext = new ThreadLocal<>();
+  // The open listers, which hold iterators that must be closed before the DB
+  private final Set<DirectoryLister> listers = ConcurrentHashMap.newKeySet();
+  private final ThreadLocal<DirectoryLister> threadLister =
+      ThreadLocal.withInitial(this::newLister);
 
   Logger log = LoggerFactory.getLogger(RocksDBTable.class);
 
   public RocksDBTable(String rocksDBDir, int cacheMB) {
-    initialize(rocksDBDir, cacheMB);
+    this(rocksDBDir, new TableConfig(cacheMB));
+  }
+
+  public RocksDBTable(String rocksDBDir, TableConfig config) {
+    initialize(rocksDBDir, config);
   }
 
-  void initialize(String path, int cacheMB) {
+  void initialize(String path, TableConfig config) {
     RocksDB.loadLibrary();
-    final Options options = new Options();
+    this.config = config;
+    walkMetrics = new WalkMetrics(config.isWalkTiming());
+    options = new Options();
+    readOptions = new ReadOptions();
     BlockBasedTableConfig tableOptions = new BlockBasedTableConfig();
-    blockCache = new LRUCache(cacheMB*SizeUnit.MB);
+    sharedMemory = config.getSharedMemory();
+    if (sharedMemory != null) {
+      blockCache = sharedMemory.getCache();
+      options.setWriteBufferManager(sharedMemory.getWriteBufferManager());
+    } else {
+      blockCache = new LRUCache(config.getCacheMB()*SizeUnit.MB);
+    }
     tableOptions.setBlockCache(blockCache);
+    if (config.getBloomBitsPerKey() > 0) {
+      bloomFilter = new BloomFilter(config.getBloomBitsPerKey(), false);
+      tableOptions.setFilterPolicy(bloomFilter);
+    }
+    tableOptions.setWholeKeyFiltering(config.isWholeKeyFiltering());
 
     statistics = new Statistics();
 
@@ -41,6 +102,13 @@ public class RocksDBTable {
         .setTableFormatConfig(tableOptions)
         .setStatistics(statistics);
         //.setCompressionType(CompressionType.NO_COMPRESSION);
+    if (config.isPrefixExtractor()) {
+      options.useFixedLengthPrefixExtractor(TableConfig.PARENT_ID_PREFIX_LENGTH);
+    }
+    if (config.getMemtableBloomRatio() > 0) {
+      options.setMemtablePrefixBloomSizeRatio(config.getMemtableBloomRatio());
+    }
+    log.info("Opening RocksDB at {} with {}", path, config);
 
 
     dbDir = new File(path);
@@ -52,13 +120,102 @@ public class RocksDBTable {
       log.error("Error initializing RocksDB, check configurations and permissions", ex);
     }
     log.info("RocksDB initialized and ready to use");
+    checkKeyEncoding();
+    statsReporter = new StatsReporter(statistics, dbDir.getName());
+    if (config.getStatsIntervalSecs() > 0) {
+      statsReporter.start(config.getStatsIntervalSecs());
+    }
+    registerMBean();
+    if (config.getPerfLevel() != PerfLevel.DISABLE) {
+      perfStats = new PerfStats();
+    }
+    if (config.getTraceDir() != null) {
+      openTrace(config.getTraceDir());
+    }
+  }
+
+  private void openTrace(String traceDir) {
+    File traceFile = new File(traceDir, dbDir.getName() + ".trace");
+    try {
+      Files.createDirectories(traceFile.getAbsoluteFile().getParentFile().toPath());
+      traceWriter = new TraceWriter(traceFile.getPath(), config.getKeyEncoding());
+      log.info("Recording lookups to {}", traceFile);
+    } catch (IOException e) {
+      log.error("Unable to create the trace {}, lookups will not be recorded", traceFile, e);
+    }
+  }
+
+  private void registerMBean() {
+    try {
+      // The full path keeps tables of the same name under different base
+      // paths apart
+      mbeanName = new ObjectName("com.sodonnell.rocksdb:type=RocksDBTable,name="
+          + ObjectName.quote(dbDir.getName()) + ",path=" + ObjectName.quote(dbDir.getAbsolutePath()));
+      ManagementFactory.getPlatformMBeanServer().registerMBean(new TableMetrics(this, walkMetrics), mbeanName);
+    } catch (JMException e) {
+      log.warn("Unable to register the metrics MBean for {}", dbDir, e);
+      mbeanName = null;
+    }
+  }
+
+  // Fails if the table was generated with a different key encoding to the one
+  // configured, as none of the lookups would find anything.
+  private void checkKeyEncoding() {
+    byte[] stored;
+    try {
+      stored = getMeta(KEY_ENCODING_META);
+    } catch (RocksDBException e) {
+      throw new RuntimeException(e);
+    }
+    if (stored == null) {
+      return;
+    }
+    KeyEncoding tableEncoding = KeyEncoding.valueOf(new String(stored, StandardCharsets.UTF_8));
+    if (tableEncoding != config.getKeyEncoding()) {
+      throw new IllegalStateException("Table " + dbDir + " was built with key encoding "
+          + tableEncoding + " but " + config.getKeyEncoding() + " is configured");
+    }
   }
 
-  //public void printStats() {
-  //  statistics.getTickerCount(TickerType)
-  //  statistics.getHistogramString();
-  //  new RocksDB.CountAndSize();
-  //}
+  // Records the key encoding of the table, so it can be checked when the table
+  // is opened again.
+  public void recordKeyEncoding() throws RocksDBException {
+    putMeta(KEY_ENCODING_META, config.getKeyEncoding().name().getBytes(StandardCharsets.UTF_8));
+  }
+
+  public KeyEncoding getKeyEncoding() {
+    return config.getKeyEncoding();
+  }
+
+  public TableConfig getConfig() {
+    return config;
+  }
+
+  public static byte[] metaKey(String name) {
+    byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+    byte[] key = Arrays.copyOf(ByteUtils.longToBytes(META_PARENT_ID), Long.BYTES + nameBytes.length);
+    System.arraycopy(nameBytes, 0, key, Long.BYTES, nameBytes.length);
+    return key;
+  }
+
+  public void putMeta(String name, byte[] value) throws RocksDBException {
+    db.put(metaKey(name), value);
+  }
+
+  public byte[] getMeta(String name) throws RocksDBException {
+    return db.get(metaKey(name));
+  }
+
+  // Returns a numeric RocksDB property such as rocksdb.total-sst-files-size,
+  // or -1 if it cannot be read.
+  public long getLongProperty(String property) {
+    try {
+      return db.getLongProperty(property);
+    } catch (RocksDBException e) {
+      log.warn("Unable to read property {}", property, e);
+      return -1;
+    }
+  }
 
   public void put(String key, String value) {
     try {
@@ -77,16 +234,204 @@ public class RocksDBTable {
   }
 
   public byte[] find(byte[] key) throws RocksDBException {
+    if (traceWriter != null) {
+      traceWriter.record(key);
+    }
+    try {
+      if (perfStats == null) {
+        return db.get(key);
+      }
+      startPerf();
+      byte[] val = db.get(key);
+      endPerf();
+      return val;
+    } catch (RocksDBException e) {
+      log.error("Error retrieving the entry in RocksDB from key: {}, cause: {}, message: {}", key, e.getCause(), e.getMessage());
+      throw e;
+    }
+  }
+
+  // Looks up the key held in the first length bytes of the buffer, so a key
+  // buffer can be reused across lookups.
+  public byte[] find(byte[] key, int offset, int length) throws RocksDBException {
+    if (traceWriter != null) {
+      traceWriter.record(key, offset, length);
+    }
+    try {
+      if (perfStats == null) {
+        return db.get(key, offset, length);
+      }
+      startPerf();
+      byte[] val = db.get(key, offset, length);
+      endPerf();
+      return val;
+    } catch (RocksDBException e) {
+      log.error("Error retrieving the entry in RocksDB from key: {}, cause: {}, message: {}", key, e.getCause(), e.getMessage());
+      throw e;
+    }
+  }
+
+  // Reads the value for the key straight into the value buffer, avoiding the
+  // byte[] allocated by find(). Both buffers must be direct. The key is read
+  // from its position to its limit. Returns the size of the value or
+  // RocksDB.NOT_FOUND. If the size is larger than the buffer capacity, only
+  // part of the value was read, and the lookup should be repeated with a
+  // larger buffer.
+  public int find(ByteBuffer key, ByteBuffer value) throws RocksDBException {
+    if (traceWriter != null) {
+      traceWriter.record(key);
+    }
     try {
-      return db.get(key);
+      value.clear();
+      if (perfStats == null) {
+        return db.get(readOptions, key, value);
+      }
+      startPerf();
+      int size = db.get(readOptions, key, value);
+      endPerf();
+      return size;
     } catch (RocksDBException e) {
       log.error("Error retrieving the entry in RocksDB from key: {}, cause: {}, message: {}", key, e.getCause(), e.getMessage());
       throw e;
     }
   }
 
+  // Looks up all the keys in a single multiGet call. The returned list is in
+  // the same order as the keys, with null for any key which was not found.
+  // The perf context of the call is shared between the keys.
+  public List<byte[]> findBatch(List<byte[]> keys) throws RocksDBException {
+    if (traceWriter != null) {
+      for (byte[] key : keys) {
+        traceWriter.record(key);
+      }
+    }
+    try {
+      if (perfStats == null) {
+        return db.multiGetAsList(keys);
+      }
+      startPerf();
+      List<byte[]> vals = db.multiGetAsList(keys);
+      perfStats.record(perfContext.get(), keys.size());
+      return vals;
+    } catch (RocksDBException e) {
+      log.error("Error retrieving {} entries in RocksDB, cause: {}, message: {}", keys.size(), e.getCause(), e.getMessage());
+      throw e;
+    }
+  }
+
+  // Creates a lister with its own iterator, for a thread listing directories.
+  // It is closed when the table is closed, if not before.
+  public DirectoryLister newLister() {
+    DirectoryLister lister = new DirectoryLister(this);
+    listers.add(lister);
+    return lister;
+  }
+
+  void removeLister(DirectoryLister lister) {
+    listers.remove(lister);
+  }
+
+  // Lists the children of parentId using a lister kept for the calling thread.
+  // See DirectoryLister.listChildren.
+  public int listChildren(long parentId, byte[] startAfter, int limit,
+      DirectoryLister.ChildVisitor visitor) throws RocksDBException {
+    return threadLister.get().listChildren(parentId, startAfter, limit, visitor);
+  }
+
+  public DirectoryLister getThreadLister() {
+    return threadLister.get();
+  }
+
+  // Moves the given SST files into the DB. The files must not overlap with each
+  // other, and when they don't overlap with existing data they are placed
+  // directly in the bottommost level without any compaction.
+  public void ingest(List<String> sstFiles) throws RocksDBException {
+    try (IngestExternalFileOptions ingestOptions = new IngestExternalFileOptions()) {
+      ingestOptions.setMoveFiles(true);
+      db.ingestExternalFile(sstFiles, ingestOptions);
+    } catch (RocksDBException e) {
+      log.error("Error ingesting {} files into RocksDB, cause: {}, message: {}", sstFiles.size(), e.getCause(), e.getMessage());
+      throw e;
+    }
+  }
+
+  public void flush() throws RocksDBException {
+    try (FlushOptions flushOptions = new FlushOptions()) {
+      flushOptions.setWaitForFlush(true);
+      db.flush(flushOptions);
+    }
+  }
+
+  // The options the DB was opened with, which are needed to write SST files
+  // compatible with this table.
+  public Options getOptions() {
+    return options;
+  }
+
+  public Statistics getStatistics() {
+    return statistics;
+  }
+
+  // The block cache, which may be shared with other tables.
+  public Cache getBlockCache() {
+    return blockCache;
+  }
+
+  public StatsReporter getStatsReporter() {
+    return statsReporter;
+  }
+
+  public WalkMetrics getWalkMetrics() {
+    return walkMetrics;
+  }
+
+  // The perf context breakdown of the lookups, or null if no perf level is
+  // configured.
+  public PerfStats getPerfStats() {
+    return perfStats;
+  }
+
+  private void startPerf() {
+    PerfContext ctx = perfContext.get();
+    if (ctx == null) {
+      db.setPerfLevel(config.getPerfLevel());
+      ctx = db.getPerfContext();
+      perfContext.set(ctx);
+    }
+    ctx.reset();
+  }
+
+  private void endPerf() {
+    perfStats.record(perfContext.get());
+  }
+
   public void close() {
+    statsReporter.stop();
+    if (mbeanName != null) {
+      try {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+      } catch (JMException e) {
+        log.warn("Unable to unregister the metrics MBean {}", mbeanName, e);
+      }
+    }
+    for (DirectoryLister lister : new ArrayList<>(listers)) {
+      lister.close();
+    }
+    readOptions.close();
     db.close();
+    // Free the native memory too, so tables can be opened and closed many
+    // times in one process
+    options.close();
+    if (bloomFilter != null) {
+      bloomFilter.close();
+    }
+    if (sharedMemory == null) {
+      blockCache.close();
+    }
+    statistics.close();
+    if (traceWriter != null) {
+      traceWriter.close();
+    }
   }
 
 }
@@ -0,0 +1,71 @@
+package com.sodonnell.rocksdb;
+
+import org.rocksdb.LRUCache;
+import org.rocksdb.RocksDB;
+import org.rocksdb.WriteBufferManager;
+import org.rocksdb.util.SizeUnit;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// A block cache and write buffer manager shared by several tables, so the
+// memory used by all the tables in the process has a single limit. The
+// memtables are charged to the cache, so the cache size is the limit for
+// both. The tables do not close the shared objects - close() frees them once
+// every table using them is closed.
+public class SharedMemory implements AutoCloseable {
+
+  // One instance per size for the tables configured through system
+  // properties, as each table builds its own TableConfig.
+  private static final Map<String, SharedMemory> GLOBAL = new HashMap<>();
+
+  private final int cacheMB;
+  private final int writeBufferMB;
+  private final LRUCache cache;
+  private final WriteBufferManager writeBufferManager;
+
+  // writeBufferMB is the total memtable size across the tables. Once it is
+  // reached, the largest memtable is flushed.
+  public SharedMemory(int cacheMB, int writeBufferMB) {
+    RocksDB.loadLibrary();
+    this.cacheMB = cacheMB;
+    this.writeBufferMB = writeBufferMB;
+    cache = new LRUCache(cacheMB * SizeUnit.MB);
+    writeBufferManager = new WriteBufferManager(writeBufferMB * SizeUnit.MB, cache);
+  }
+
+  // Returns the process wide instance with these sizes, creating it on first
+  // use. It is never closed.
+  public static synchronized SharedMemory global(int cacheMB, int writeBufferMB) {
+    return GLOBAL.computeIfAbsent(cacheMB + "/" + writeBufferMB,
+        k -> new SharedMemory(cacheMB, writeBufferMB));
+  }
+
+  public int getCacheMB() {
+    return cacheMB;
+  }
+
+  public int getWriteBufferMB() {
+    return writeBufferMB;
+  }
+
+  public LRUCache getCache() {
+    return cache;
+  }
+
+  public WriteBufferManager getWriteBufferManager() {
+    return writeBufferManager;
+  }
+
+  @Override
+  public void close() {
+    writeBufferManager.close();
+    cache.close();
+  }
+
+  @Override
+  public String toString() {
+    return "SharedMemory{cacheMB=" + cacheMB + ", writeBufferMB=" + writeBufferMB + "}";
+  }
+
+}
@@ -0,0 +1,134 @@
+package com.sodonnell.rocksdb;
+
+import org.rocksdb.HistogramData;
+import org.rocksdb.HistogramType;
+import org.rocksdb.Statistics;
+import org.rocksdb.TickerType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Samples the RocksDB statistics of a table. When started, it logs the change
+// in the read path tickers since the last sample at a fixed interval. The
+// summary covers everything since the table was opened. The get latency
+// percentiles come from a RocksDB histogram, which is cumulative, so they are
+// always since the table was opened.
+public class StatsReporter {
+
+  private static final Logger log = LoggerFactory.getLogger(StatsReporter.class);
+
+  private static final TickerType[] TICKERS = {
+      TickerType.BLOCK_CACHE_INDEX_HIT,
+      TickerType.BLOCK_CACHE_INDEX_MISS,
+      TickerType.BLOCK_CACHE_FILTER_HIT,
+      TickerType.BLOCK_CACHE_FILTER_MISS,
+      TickerType.BLOCK_CACHE_DATA_HIT,
+      TickerType.BLOCK_CACHE_DATA_MISS,
+      TickerType.BLOOM_FILTER_USEFUL,
+      TickerType.BLOOM_FILTER_PREFIX_USEFUL,
+      TickerType.MEMTABLE_HIT,
+      TickerType.MEMTABLE_MISS,
+      TickerType.NUMBER_KEYS_READ,
+      TickerType.BYTES_READ
+  };
+
+  private final Statistics statistics;
+  private final String name;
+  private final long[] last = new long[TICKERS.length];
+  private ScheduledExecutorService executor;
+  // Set once stopped, as the table closes the statistics straight after
+  private boolean stopped = false;
+
+  public StatsReporter(Statistics statistics, String name) {
+    this.statistics = statistics;
+    this.name = name;
+  }
+
+  public synchronized void start(long intervalSecs) {
+    if (executor != null) {
+      return;
+    }
+    sample();
+    executor = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "stats-" + name);
+      t.setDaemon(true);
+      return t;
+    });
+    executor.scheduleAtFixedRate(this::logDelta, intervalSecs, intervalSecs, TimeUnit.SECONDS);
+  }
+
+  // Stops the periodic logging, and waits for a run in progress to finish, so
+  // the statistics can be closed once this returns.
+  public void stop() {
+    ScheduledExecutorService running;
+    synchronized (this) {
+      stopped = true;
+      running = executor;
+      executor = null;
+    }
+    if (running == null) {
+      return;
+    }
+    // Not holding the lock, as a run may be waiting for it
+    running.shutdownNow();
+    try {
+      if (!running.awaitTermination(10, TimeUnit.SECONDS)) {
+        log.warn("The stats reporter for {} did not stop within 10 seconds", name);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // Logs the tickers counted since the last call.
+  public synchronized void logDelta() {
+    if (stopped) {
+      return;
+    }
+    long[] previous = last.clone();
+    sample();
+    long[] delta = new long[TICKERS.length];
+    for (int i=0; i<TICKERS.length; i++) {
+      delta[i] = last[i] - previous[i];
+    }
+    log.info("Stats for {} since last report: {}", name, format(delta));
+  }
+
+  // The tickers and get latency since the table was opened.
+  // This does not move the baseline of the periodic deltas.
+  public synchronized String summary() {
+    return "Stats for " + name + ": " + format(sample(new long[TICKERS.length]));
+  }
+
+  private void sample() {
+    sample(last);
+  }
+
+  private long[] sample(long[] into) {
+    for (int i=0; i<TICKERS.length; i++) {
+      into[i] = statistics.getTickerCount(TICKERS[i]);
+    }
+    return into;
+  }
+
+  private String format(long[] t) {
+    HistogramData get = statistics.getHistogramData(HistogramType.DB_GET);
+    return String.format("block cache index %d/%d (%s), filter %d/%d (%s), data %d/%d (%s) hit/miss; "
+            + "bloom useful %d, prefix useful %d; memtable %d/%d hit/miss; keys read %d, bytes read %d; "
+            + "get micros p50 %.1f p99 %.1f max %.0f",
+        t[0], t[1], ratio(t[0], t[1]), t[2], t[3], ratio(t[2], t[3]), t[4], t[5], ratio(t[4], t[5]),
+        t[6], t[7], t[8], t[9], t[10], t[11],
+        get.getMedian(), get.getPercentile99(), get.getMax());
+  }
+
+  private static String ratio(long hits, long misses) {
+    if (hits + misses == 0) {
+      return "-";
+    }
+    return String.format("%.3f", (double)hits / (hits + misses));
+  }
+
+}
@@ -0,0 +1,226 @@
+package com.sodonnell.rocksdb;
+
+import org.rocksdb.PerfLevel;
+
+import java.util.Properties;
+
+// Settings used to open a RocksDBTable. The defaults match the original table
+// setup - an LRU block cache and no filters. The filter options must be the
+// same when the data is generated and when it is queried, as the filters are
+// written into the SST files.
+public class TableConfig {
+
+  public static final String BLOOM_BITS_PER_KEY = "rocksdb.bloomBitsPerKey";
+  public static final String WHOLE_KEY_FILTERING = "rocksdb.wholeKeyFiltering";
+  public static final String PREFIX_EXTRACTOR = "rocksdb.prefixExtractor";
+  public static final String MEMTABLE_BLOOM_RATIO = "rocksdb.memtableBloomRatio";
+  public static final String KEY_ENCODING = "rocksdb.keyEncoding";
+  public static final String STATS_INTERVAL_SECS = "rocksdb.statsIntervalSecs";
+  public static final String PERF_LEVEL = "rocksdb.perfLevel";
+  public static final String LIST_READAHEAD_KB = "rocksdb.listReadaheadKB";
+  public static final String SHARED_CACHE_MB = "rocksdb.sharedCacheMB";
+  public static final String SHARED_WRITE_BUFFER_MB = "rocksdb.sharedWriteBufferMB";
+  public static final String TRACE_DIR = "rocksdb.traceDir";
+  public static final String WALK_TIMING = "rocksdb.walkTiming";
+
+  // The key starts with the 8 byte parent ID, so all children of a directory
+  // share this prefix.
+  public static final int PARENT_ID_PREFIX_LENGTH = Long.BYTES;
+
+  private int cacheMB;
+  private double bloomBitsPerKey = 0;
+  private boolean wholeKeyFiltering = true;
+  private boolean prefixExtractor = false;
+  private double memtableBloomRatio = 0;
+  private KeyEncoding keyEncoding = KeyEncoding.UTF_16BE;
+  private long statsIntervalSecs = 0;
+  private PerfLevel perfLevel = PerfLevel.DISABLE;
+  private long listReadaheadKB = 0;
+  private SharedMemory sharedMemory = null;
+  private String traceDir = null;
+  private boolean walkTiming = true;
+
+  public TableConfig(int cacheMB) {
+    this.cacheMB = cacheMB;
+  }
+
+  // Builds a config using any of the rocksdb.* settings passed as system
+  // properties, eg -Drocksdb.bloomBitsPerKey=10
+  public static TableConfig fromSystemProperties(int cacheMB) {
+    return fromProperties(cacheMB, System.getProperties());
+  }
+
+  public static TableConfig fromProperties(int cacheMB, Properties props) {
+    TableConfig conf = new TableConfig(cacheMB);
+    conf.setBloomBitsPerKey(Double.parseDouble(props.getProperty(BLOOM_BITS_PER_KEY, "0")));
+    conf.setWholeKeyFiltering(Boolean.parseBoolean(props.getProperty(WHOLE_KEY_FILTERING, "true")));
+    conf.setPrefixExtractor(Boolean.parseBoolean(props.getProperty(PREFIX_EXTRACTOR, "false")));
+    conf.setMemtableBloomRatio(Double.parseDouble(props.getProperty(MEMTABLE_BLOOM_RATIO, "0")));
+    conf.setKeyEncoding(KeyEncoding.valueOf(props.getProperty(KEY_ENCODING, KeyEncoding.UTF_16BE.name())));
+    conf.setStatsIntervalSecs(Long.parseLong(props.getProperty(STATS_INTERVAL_SECS, "0")));
+    conf.setPerfLevel(PerfLevel.valueOf(props.getProperty(PERF_LEVEL, PerfLevel.DISABLE.name())));
+    conf.setListReadaheadKB(Long.parseLong(props.getProperty(LIST_READAHEAD_KB, "0")));
+    int sharedCacheMB = Integer.parseInt(props.getProperty(SHARED_CACHE_MB, "0"));
+    if (sharedCacheMB > 0) {
+      int writeBufferMB = Integer.parseInt(props.getProperty(SHARED_WRITE_BUFFER_MB,
+          Integer.toString(sharedCacheMB / 4)));
+      conf.setSharedMemory(SharedMemory.global(sharedCacheMB, writeBufferMB));
+    }
+    conf.setTraceDir(props.getProperty(TRACE_DIR));
+    conf.setWalkTiming(Boolean.parseBoolean(props.getProperty(WALK_TIMING, "true")));
+    return conf;
+  }
+
+  public int getCacheMB() {
+    return cacheMB;
+  }
+
+  public TableConfig setCacheMB(int cacheMB) {
+    this.cacheMB = cacheMB;
+    return this;
+  }
+
+  public double getBloomBitsPerKey() {
+    return bloomBitsPerKey;
+  }
+
+  // Bits per key for a full (not block based) bloom filter. Zero disables it.
+  public TableConfig setBloomBitsPerKey(double bloomBitsPerKey) {
+    this.bloomBitsPerKey = bloomBitsPerKey;
+    return this;
+  }
+
+  public boolean isWholeKeyFiltering() {
+    return wholeKeyFiltering;
+  }
+
+  // Add the whole key to the bloom filter. If this is false and the prefix
+  // extractor is enabled, only the parent ID prefix is added.
+  public TableConfig setWholeKeyFiltering(boolean wholeKeyFiltering) {
+    this.wholeKeyFiltering = wholeKeyFiltering;
+    return this;
+  }
+
+  public boolean isPrefixExtractor() {
+    return prefixExtractor;
+  }
+
+  // Use a fixed prefix extractor over the 8 byte parent ID.
+  public TableConfig setPrefixExtractor(boolean prefixExtractor) {
+    this.prefixExtractor = prefixExtractor;
+    return this;
+  }
+
+  public double getMemtableBloomRatio() {
+    return memtableBloomRatio;
+  }
+
+  // Fraction of the write buffer to use for a memtable prefix bloom. RocksDB
+  // only builds it when the prefix extractor is enabled.
+  public TableConfig setMemtableBloomRatio(double memtableBloomRatio) {
+    this.memtableBloomRatio = memtableBloomRatio;
+    return this;
+  }
+
+  public KeyEncoding getKeyEncoding() {
+    return keyEncoding;
+  }
+
+  public TableConfig setKeyEncoding(KeyEncoding keyEncoding) {
+    this.keyEncoding = keyEncoding;
+    return this;
+  }
+
+  public long getStatsIntervalSecs() {
+    return statsIntervalSecs;
+  }
+
+  // How often to log the change in the RocksDB statistics. Zero disables it.
+  public TableConfig setStatsIntervalSecs(long statsIntervalSecs) {
+    this.statsIntervalSecs = statsIntervalSecs;
+    return this;
+  }
+
+  public PerfLevel getPerfLevel() {
+    return perfLevel;
+  }
+
+  // Collect the RocksDB perf context of each lookup at this level. DISABLE
+  // turns the instrumentation off.
+  public TableConfig setPerfLevel(PerfLevel perfLevel) {
+    this.perfLevel = perfLevel;
+    return this;
+  }
+
+  public long getListReadaheadKB() {
+    return listReadaheadKB;
+  }
+
+  // Readahead for the iterators listing directories. Zero leaves it to
+  // RocksDB, which starts reading ahead after a few sequential block reads.
+  public TableConfig setListReadaheadKB(long listReadaheadKB) {
+    this.listReadaheadKB = listReadaheadKB;
+    return this;
+  }
+
+  public SharedMemory getSharedMemory() {
+    return sharedMemory;
+  }
+
+  // Use a block cache and write buffer manager shared with other tables. The
+  // cacheMB setting is ignored when this is set. Null gives the table its own
+  // cache and memtable limit.
+  public TableConfig setSharedMemory(SharedMemory sharedMemory) {
+    this.sharedMemory = sharedMemory;
+    return this;
+  }
+
+  public String getTraceDir() {
+    return traceDir;
+  }
+
+  // Record every lookup to <traceDir>/<table dir name>.trace, to replay later
+  // with TraceReplayer. Null turns recording off.
+  public TableConfig setTraceDir(String traceDir) {
+    this.traceDir = traceDir;
+    return this;
+  }
+
+  public boolean isWalkTiming() {
+    return walkTiming;
+  }
+
+  // Time every walk for the walk latency metrics. Turning it off leaves the
+  // walk, lookup and miss counts.
+  public TableConfig setWalkTiming(boolean walkTiming) {
+    this.walkTiming = walkTiming;
+    return this;
+  }
+
+  // The directory holding a table. Tables using a key encoding other than the
+  // original UTF-16 have the encoding appended, so each encoding of a table
+  // can be generated side by side.
+  public String tableDirName(String tableName) {
+    if (keyEncoding == KeyEncoding.UTF_16BE) {
+      return tableName;
+    }
+    return tableName + "_" + keyEncoding;
+  }
+
+  @Override
+  public String toString() {
+    return "TableConfig{cacheMB=" + cacheMB
+        + ", bloomBitsPerKey=" + bloomBitsPerKey
+        + ", wholeKeyFiltering=" + wholeKeyFiltering
+        + ", prefixExtractor=" + prefixExtractor
+        + ", memtableBloomRatio=" + memtableBloomRatio
+        + ", keyEncoding=" + keyEncoding
+        + ", statsIntervalSecs=" + statsIntervalSecs
+        + ", perfLevel=" + perfLevel
+        + ", listReadaheadKB=" + listReadaheadKB
+        + ", sharedMemory=" + sharedMemory
+        + ", traceDir=" + traceDir
+        + ", walkTiming=" + walkTiming + "}";
+  }
+
+}
@@ -0,0 +1,90 @@
+package com.sodonnell.rocksdb;
+
+import org.HdrHistogram.Histogram;
+
+public class TableMetrics implements TableMetricsMXBean {
+
+  private final RocksDBTable table;
+  private final WalkMetrics walkMetrics;
+
+  public TableMetrics(RocksDBTable table, WalkMetrics walkMetrics) {
+    this.table = table;
+    this.walkMetrics = walkMetrics;
+  }
+
+  @Override
+  public long getBlockCacheUsage() {
+    return table.getBlockCache().getUsage();
+  }
+
+  @Override
+  public long getBlockCachePinnedUsage() {
+    return table.getBlockCache().getPinnedUsage();
+  }
+
+  @Override
+  public long getMemtableSize() {
+    return table.getLongProperty("rocksdb.cur-size-all-mem-tables");
+  }
+
+  @Override
+  public long getEstimatedNumKeys() {
+    return table.getLongProperty("rocksdb.estimate-num-keys");
+  }
+
+  @Override
+  public long getWalks() {
+    return walkMetrics.getWalks();
+  }
+
+  @Override
+  public long getLookups() {
+    return walkMetrics.getLookups();
+  }
+
+  @Override
+  public long getMisses() {
+    return walkMetrics.getMisses();
+  }
+
+  @Override
+  public long getWalkLatencyCount() {
+    return walkMetrics.latencySnapshot().getTotalCount();
+  }
+
+  @Override
+  public double getWalkLatencyP50() {
+    return percentile(50);
+  }
+
+  @Override
+  public double getWalkLatencyP90() {
+    return percentile(90);
+  }
+
+  @Override
+  public double getWalkLatencyP99() {
+    return percentile(99);
+  }
+
+  @Override
+  public double getWalkLatencyP999() {
+    return percentile(99.9);
+  }
+
+  @Override
+  public double getWalkLatencyMax() {
+    return walkMetrics.latencySnapshot().getMaxValue() / 1000.0;
+  }
+
+  @Override
+  public void resetWalkLatency() {
+    walkMetrics.resetLatency();
+  }
+
+  private double percentile(double p) {
+    Histogram h = walkMetrics.latencySnapshot();
+    return h.getValueAtPercentile(p) / 1000.0;
+  }
+
+}
@@ -0,0 +1,38 @@
+package com.sodonnell.rocksdb;
+
+// The live state of a RocksDBTable and the walks made against it, registered
+// with the platform MBean server as com.sodonnell.rocksdb:type=RocksDBTable,
+// name="<table directory>",path="<absolute table path>", with both values
+// quoted. Sizes are in bytes and latencies in microseconds, with the latency
+// percentiles covering the walks since the last reset.
+public interface TableMetricsMXBean {
+
+  long getBlockCacheUsage();
+
+  long getBlockCachePinnedUsage();
+
+  long getMemtableSize();
+
+  long getEstimatedNumKeys();
+
+  long getWalks();
+
+  long getLookups();
+
+  long getMisses();
+
+  long getWalkLatencyCount();
+
+  double getWalkLatencyP50();
+
+  double getWalkLatencyP90();
+
+  double getWalkLatencyP99();
+
+  double getWalkLatencyP999();
+
+  double getWalkLatencyMax();
+
+  void resetWalkLatency();
+
+}
@@ -0,0 +1,140 @@
+package com.sodonnell.rocksdb;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Reads a trace written by TraceWriter. The file is memory mapped, so replay
+// does not copy it onto the heap, and each thread reads it through its own
+// Cursor. See TraceWriter for the format.
+public class TraceReader {
+
+  private final String file;
+  private final MappedByteBuffer buffer;
+  private final KeyEncoding keyEncoding;
+  private final long startMillis;
+  // Where the records start, after the header
+  private final int recordsStart;
+
+  public TraceReader(String file) throws IOException {
+    this.file = file;
+    try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+      if (channel.size() > TraceWriter.MAX_BYTES) {
+        throw new IOException("The trace " + file + " is larger than " + TraceWriter.MAX_BYTES + " bytes");
+      }
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    buffer.order(ByteOrder.BIG_ENDIAN);
+    if (buffer.remaining() < 2 * Integer.BYTES || buffer.getInt() != TraceWriter.MAGIC) {
+      throw new IOException(file + " is not a lookup trace");
+    }
+    int version = buffer.getInt();
+    if (version != TraceWriter.VERSION) {
+      throw new IOException("The trace " + file + " has version " + version
+          + " but only version " + TraceWriter.VERSION + " can be read");
+    }
+    // DataOutputStream.writeUTF writes a 2 byte length, then modified UTF-8,
+    // which is plain UTF-8 for the enum names.
+    byte[] encoding = new byte[buffer.getShort() & 0xFFFF];
+    buffer.get(encoding);
+    keyEncoding = KeyEncoding.valueOf(new String(encoding, StandardCharsets.UTF_8));
+    startMillis = buffer.getLong();
+    recordsStart = buffer.position();
+  }
+
+  public String getFile() {
+    return file;
+  }
+
+  public KeyEncoding getKeyEncoding() {
+    return keyEncoding;
+  }
+
+  // Wall clock time recording started, in ms. Record times are relative to it.
+  public long getStartMillis() {
+    return startMillis;
+  }
+
+  // A new cursor positioned at the first record. A cursor is not thread safe,
+  // but any number of them can read the trace at once.
+  public Cursor cursor() {
+    ByteBuffer view = buffer.duplicate();
+    view.position(recordsStart);
+    return new Cursor(view);
+  }
+
+  // Counts the records by reading through the whole trace
+  public long countRecords() {
+    Cursor cursor = cursor();
+    long count = 0;
+    while (cursor.next()) {
+      count++;
+    }
+    return count;
+  }
+
+  public static class Cursor {
+    private final ByteBuffer view;
+    private byte[] key = new byte[64];
+    private int keyLength = 0;
+    private long timeMicros = 0;
+
+    private Cursor(ByteBuffer view) {
+      this.view = view;
+    }
+
+    // Moves to the next record, returning false at the end of the trace. A
+    // record cut short by the writer stopping part way is treated as the end.
+    public boolean next() {
+      if (!view.hasRemaining()) {
+        return false;
+      }
+      try {
+        int zigzag = ByteUtils.readVarInt(view);
+        long delta = (zigzag >>> 1) ^ -(zigzag & 1);
+        int length = ByteUtils.readVarInt(view);
+        if (length > view.remaining()) {
+          view.position(view.limit());
+          return false;
+        }
+        if (key.length < length) {
+          key = new byte[length * 2];
+        }
+        view.get(key, 0, length);
+        keyLength = length;
+        timeMicros += delta;
+        return true;
+      } catch (BufferUnderflowException e) {
+        return false;
+      }
+    }
+
+    // Microseconds from the start of recording to this record. The records
+    // of different recording threads interleave, so this is not always
+    // larger than the time of the record before.
+    public long timeMicros() {
+      return timeMicros;
+    }
+
+    // The buffer holding the key, which is reused for the next record. Only
+    // the first keyLength() bytes are valid.
+    public byte[] key() {
+      return key;
+    }
+
+    public int keyLength() {
+      return keyLength;
+    }
+
+    public long parentId() {
+      return ByteUtils.bytesToLong(key, 0);
+    }
+  }
+
+}
@@ -0,0 +1,207 @@
+package com.sodonnell.rocksdb;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Records every key looked up in a table, with the time of the lookup, so the
+// lookups can be replayed later by TraceReplayer. The file starts with a
+// header:
+//
+//   int     magic "RKTR"
+//   int     format version
+//   UTF     key encoding of the table
+//   long    wall clock time recording started, in ms
+//
+// followed by one record per lookup:
+//
+//   varint  microseconds since the previous record, zigzag encoded as it can
+//           be negative
+//   varint  key length
+//   bytes   key - the 8 byte parent ID and the encoded name
+//
+// The lookup is timed before taking any lock, and each thread collects its
+// records in its own buffer, which is only written to the file when full, so
+// recording does not serialize the lookups it records. The records of each
+// thread are in time order, but the buffers of different threads interleave,
+// so the delta to the record before can be negative.
+//
+// Recording stops when the file reaches 2GB, as TraceReader maps the whole
+// file into memory. Thread safe.
+public class TraceWriter implements AutoCloseable {
+
+  public static final int MAGIC = 0x524B5452;
+  public static final int VERSION = 2;
+  public static final long MAX_BYTES = Integer.MAX_VALUE;
+
+  // Records are written to the file once a thread buffers this many bytes
+  private static final int THREAD_BUFFER_BYTES = 16 * 1024;
+
+  private static final Logger log = LoggerFactory.getLogger(TraceWriter.class);
+
+  private final String file;
+  private final DataOutputStream out;
+  private final long startNanos;
+  private final byte[] varInt = new byte[5];
+  // The time of the last record written, in micros since the start
+  private long lastMicros = 0;
+  private long bytes;
+  private long records = 0;
+  private volatile boolean stopped = false;
+  // Every thread's buffer, so the records left in them are written on close
+  private final List<ThreadBuffer> buffers = new CopyOnWriteArrayList<>();
+  private final ThreadLocal<ThreadBuffer> threadBuffer = ThreadLocal.withInitial(() -> {
+    ThreadBuffer buffer = new ThreadBuffer();
+    buffers.add(buffer);
+    return buffer;
+  });
+
+  public TraceWriter(String file, KeyEncoding keyEncoding) throws IOException {
+    this.file = file;
+    out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1024 * 1024));
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeUTF(keyEncoding.name());
+    out.writeLong(System.currentTimeMillis());
+    bytes = out.size();
+    startNanos = System.nanoTime();
+  }
+
+  public void record(byte[] key, int offset, int length) {
+    long micros = (System.nanoTime() - startNanos) / 1000;
+    if (stopped) {
+      return;
+    }
+    ThreadBuffer buffer = threadBuffer.get();
+    synchronized (buffer) {
+      buffer.add(micros, key, offset, length);
+      if (buffer.size >= THREAD_BUFFER_BYTES) {
+        flush(buffer);
+      }
+    }
+  }
+
+  public void record(byte[] key) {
+    record(key, 0, key.length);
+  }
+
+  // Records the key between the buffer position and limit
+  public void record(ByteBuffer key) {
+    long micros = (System.nanoTime() - startNanos) / 1000;
+    if (stopped) {
+      return;
+    }
+    ThreadBuffer buffer = threadBuffer.get();
+    synchronized (buffer) {
+      buffer.add(micros, key);
+      if (buffer.size >= THREAD_BUFFER_BYTES) {
+        flush(buffer);
+      }
+    }
+  }
+
+  // Writes the buffered records of one thread to the file. The caller holds
+  // the buffer's lock.
+  private void flush(ThreadBuffer buffer) {
+    synchronized (this) {
+      int pos = 0;
+      while (pos < buffer.size && !stopped) {
+        long micros = ByteUtils.bytesToLong(buffer.data, pos);
+        int length = ByteUtils.readVarInt(buffer.data, pos + Long.BYTES);
+        int keyStart = pos + Long.BYTES + ByteUtils.varIntSize(length);
+        write(micros, buffer.data, keyStart, length);
+        pos = keyStart + length;
+      }
+    }
+    buffer.size = 0;
+  }
+
+  private void write(long micros, byte[] key, int offset, int length) {
+    long delta = Math.max(Integer.MIN_VALUE, Math.min(micros - lastMicros, Integer.MAX_VALUE));
+    int zigzag = ((int)delta << 1) ^ ((int)delta >> 31);
+    int size = ByteUtils.varIntSize(zigzag) + ByteUtils.varIntSize(length) + length;
+    if (bytes + size > MAX_BYTES) {
+      log.warn("Stopped recording to {} as it reached {} bytes, after {} lookups", file, bytes, records);
+      stopped = true;
+      return;
+    }
+    try {
+      out.write(varInt, 0, ByteUtils.writeVarInt(zigzag, varInt, 0));
+      out.write(varInt, 0, ByteUtils.writeVarInt(length, varInt, 0));
+      out.write(key, offset, length);
+    } catch (IOException e) {
+      log.error("Error writing to the trace {}, recording stopped", file, e);
+      stopped = true;
+      return;
+    }
+    lastMicros += delta;
+    bytes += size;
+    records++;
+  }
+
+  public synchronized long getRecords() {
+    return records;
+  }
+
+  // Writes the records still buffered by every thread, and closes the file.
+  // Lookups recorded after this are dropped.
+  @Override
+  public void close() {
+    for (ThreadBuffer buffer : buffers) {
+      synchronized (buffer) {
+        flush(buffer);
+      }
+    }
+    synchronized (this) {
+      stopped = true;
+      try {
+        out.close();
+      } catch (IOException e) {
+        log.error("Error closing the trace {}", file, e);
+      }
+      log.info("Recorded {} lookups to {}", records, file);
+    }
+  }
+
+  // A thread's records waiting to be written, each as the 8 byte time in
+  // micros, a varint key length and the key.
+  private static class ThreadBuffer {
+    private byte[] data = new byte[THREAD_BUFFER_BYTES + 256];
+    private int size = 0;
+
+    void add(long micros, byte[] key, int offset, int length) {
+      ensureSpace(length);
+      ByteUtils.longToBytes(micros, data, size);
+      size += Long.BYTES;
+      size += ByteUtils.writeVarInt(length, data, size);
+      System.arraycopy(key, offset, data, size, length);
+      size += length;
+    }
+
+    void add(long micros, ByteBuffer key) {
+      int length = key.remaining();
+      ensureSpace(length);
+      ByteUtils.longToBytes(micros, data, size);
+      size += Long.BYTES;
+      size += ByteUtils.writeVarInt(length, data, size);
+      key.duplicate().get(data, size, length);
+      size += length;
+    }
+
+    private void ensureSpace(int length) {
+      int needed = size + Long.BYTES + 5 + length;
+      if (needed > data.length) {
+        data = Arrays.copyOf(data, Math.max(needed, data.length * 2));
+      }
+    }
+  }
+
+}
@@ -0,0 +1,104 @@
+package com.sodonnell.rocksdb;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.SingleWriterRecorder;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters for the walks made against a table. They are updated on every walk
+// from any number of threads, so the counts are striped LongAdders, and each
+// thread records its walk latency into its own SingleWriterRecorder, which
+// the readers merge. Timing the walks can be turned off, which saves the two
+// nanoTime calls per walk too.
+public class WalkMetrics {
+
+  private final boolean timed;
+  private final LongAdder walks = new LongAdder();
+  private final LongAdder lookups = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  // Every thread's recorder, kept after the thread stops so its walks are
+  // still counted
+  private final List<ThreadLatency> recorders = new CopyOnWriteArrayList<>();
+  private final ThreadLocal<ThreadLatency> walkLatency = ThreadLocal.withInitial(() -> {
+    ThreadLatency latency = new ThreadLatency();
+    recorders.add(latency);
+    return latency;
+  });
+  // Walk latency since the start or the last reset, built up from the
+  // recorders when it is read.
+  private final Histogram latencyTotal = new Histogram(3);
+
+  public WalkMetrics() {
+    this(true);
+  }
+
+  public WalkMetrics(boolean timed) {
+    this.timed = timed;
+  }
+
+  public boolean isTimed() {
+    return timed;
+  }
+
+  // The start time to pass to recordWalk, or 0 if walks are not timed
+  public long startWalk() {
+    return timed ? System.nanoTime() : 0;
+  }
+
+  // A walk started at startNanos which made the given number of lookups, the
+  // last of which found nothing.
+  public void recordWalk(int walkLookups, long startNanos) {
+    walks.increment();
+    lookups.add(walkLookups);
+    misses.increment();
+    if (timed) {
+      walkLatency.get().recorder.recordValue(System.nanoTime() - startNanos);
+    }
+  }
+
+  // Walks or lookups which were not timed, eg a batch of walks.
+  public void recordLookups(long walkCount, long lookupCount, long missCount) {
+    walks.add(walkCount);
+    lookups.add(lookupCount);
+    misses.add(missCount);
+  }
+
+  public long getWalks() {
+    return walks.sum();
+  }
+
+  public long getLookups() {
+    return lookups.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  // A copy of the walk latency histogram, in nanoseconds. Empty if walks are
+  // not timed.
+  public synchronized Histogram latencySnapshot() {
+    for (ThreadLatency latency : recorders) {
+      latency.interval = latency.recorder.getIntervalHistogram(latency.interval);
+      latencyTotal.add(latency.interval);
+    }
+    return latencyTotal.copy();
+  }
+
+  public synchronized void resetLatency() {
+    for (ThreadLatency latency : recorders) {
+      latency.recorder.reset();
+    }
+    latencyTotal.reset();
+  }
+
+  // A thread's recorder, and the interval histogram recycled when reading it,
+  // which must come from the same recorder.
+  private static class ThreadLatency {
+    private final SingleWriterRecorder recorder = new SingleWriterRecorder(3);
+    private Histogram interval;
+  }
+
+}
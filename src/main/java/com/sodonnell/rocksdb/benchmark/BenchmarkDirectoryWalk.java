@@ -1,34 +1,113 @@
 package com.sodonnell.rocksdb.benchmark;
 
-import com.sodonnell.rocksdb.generate.DataGenerator;
+import com.sodonnell.rocksdb.KeyEncoding;
+import com.sodonnell.rocksdb.PerfStats;
+import com.sodonnell.rocksdb.RocksDBTable;
+import com.sodonnell.rocksdb.TableConfig;
+import com.sodonnell.rocksdb.query.PathCache;
+import com.sodonnell.rocksdb.query.PathDistribution;
+import com.sodonnell.rocksdb.query.PathDistributions;
 import com.sodonnell.rocksdb.query.Query;
 import com.sodonnell.rocksdb.query.QueryData;
+import org.openjdk.jmh.annotations.AuxCounters;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Fork;
 import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
 import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
 import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.annotations.Warmup;
 import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.runner.IterationType;
+import org.rocksdb.PerfLevel;
+import org.rocksdb.TickerType;
+
+import java.util.concurrent.ThreadLocalRandom;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 public class BenchmarkDirectoryWalk {
 
   @State(Scope.Benchmark)
   public static class BenchmarkState {
    /// @Param({"LONG", "PADDING_50", "PADDING_100", "PADDING_150", "PADDING_200", "PADDING_250"})
-    @Param({"FLAT_BUFFER_LONG", "FLAT_BUFFER", "PROTO", "PROTO_LONG"})
+    // The name of the table, which is also the name of the value codec
+    @Param({"FLAT_BUFFER_LONG", "FLAT_BUFFER", "PROTO", "PROTO_LONG", "BINARY", "BINARY_DICT"})
     public String tableName;
 
-    int cacheSize = 4096;
+    // Number of entries in the path cache in front of RocksDB, 0 to disable it.
+    @Param({"0"})
+    public int pathCacheSize;
+
+    // Filter settings. These need to match the settings the table was
+    // generated with, otherwise the filters in the SST files are not used.
+    @Param({"0"})
+    public double bloomBitsPerKey;
+
+    @Param({"true"})
+    public boolean wholeKeyFiltering;
+
+    @Param({"false"})
+    public boolean prefixExtractor;
+
+    @Param({"0"})
+    public double memtableBloomRatio;
+
+    // The key encoding the table was generated with. Tables with an encoding
+    // other than UTF_16BE are read from <tableName>_<keyEncoding>.
+    @Param({"UTF_16BE"})
+    public String keyEncoding;
+
+    // Read values into a reused direct ByteBuffer instead of a new byte[]
+    @Param({"false"})
+    public boolean directReads;
+
+    // Decode every field of each value rather than just the object ID
+    @Param({"false"})
+    public boolean decodeAll;
+
+    // Where the tables are, and the shape of the tree they were generated
+    // with, which the walks use to pick children and check their depth.
+    @Param({"/tmp/rocksdb"})
+    public String basePath;
+
+    @Param({"5"})
+    public int dirsPerLevel;
+
+    @Param({"10"})
+    public int levels;
+
+    // RocksDB block cache size in MB, eg -p cacheMB=512,1024,2048,4096,8192
+    @Param({"4096"})
+    public int cacheMB;
+
+    // Log the change in the RocksDB statistics every N seconds, 0 to disable.
+    // A summary is always printed at the end of the trial.
+    @Param({"0"})
+    public long statsIntervalSecs;
+
+    // RocksDB perf level for the per depth perf context breakdown, eg
+    // ENABLE_TIME_EXCEPT_FOR_MUTEX. DISABLE turns it off.
+    @Param({"DISABLE"})
+    public String perfLevel;
+
+    // How walks choose their path, eg uniform, zipf:0.99, hotspot:0.05:0.8,
+    // latest:0.99 or trace:/path/to/paths.txt. See PathDistributions.
+    @Param({"uniform"})
+    public String distribution;
+
     public QueryData queryData;
+    public PathDistribution pathDistribution;
+    private boolean measuring = false;
 
     @Setup(Level.Trial)
     public void setUp() throws Exception {
@@ -36,12 +115,99 @@ public class BenchmarkDirectoryWalk {
         queryData.close();
       }
       System.out.println("Getting a new query object");
-      Query q = new Query("/tmp/rocksdb", 5, 10, cacheSize);
-      queryData = q.getQueryObject(DataGenerator.DB_TYPE.valueOf(tableName));
+      TableConfig conf = new TableConfig(cacheMB)
+          .setBloomBitsPerKey(bloomBitsPerKey)
+          .setWholeKeyFiltering(wholeKeyFiltering)
+          .setPrefixExtractor(prefixExtractor)
+          .setMemtableBloomRatio(memtableBloomRatio)
+          .setKeyEncoding(KeyEncoding.valueOf(keyEncoding))
+          .setStatsIntervalSecs(statsIntervalSecs)
+          .setPerfLevel(PerfLevel.valueOf(perfLevel));
+      Query q = new Query(basePath, dirsPerLevel, levels, conf);
+      queryData = q.getQueryObject(tableName);
+      pathDistribution = PathDistributions.create(distribution, dirsPerLevel, levels);
+      queryData.setDirectReads(directReads);
+      queryData.setDecodeAll(decodeAll);
+      if (pathCacheSize > 0) {
+        queryData.setPathCache(new PathCache(pathCacheSize));
+      }
+    }
+
+    // The perf context breakdown only covers the measurement iterations
+    @Setup(Level.Iteration)
+    public void startIteration(IterationParams params) {
+      PerfStats perfStats = queryData.getTable().getPerfStats();
+      if (perfStats != null && params.getType() == IterationType.MEASUREMENT && !measuring) {
+        perfStats.reset();
+        measuring = true;
+      }
+    }
+
+    // Walks a path from the distribution, and checks it reached the bottom of
+    // the tree.
+    public int walk() throws Exception {
+      int steps = queryData.walk(pathDistribution);
+      if (steps != levels) {
+        throw new Exception("Expected "+levels+" steps but only got "+steps);
+      }
+      return steps;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      RocksDBTable table = queryData.getTable();
+      System.out.println("Table size on disk "+ table.getLongProperty("rocksdb.total-sst-files-size")
+          + " bytes, block cache usage " + table.getLongProperty("rocksdb.block-cache-usage")
+          + " bytes, estimated keys " + table.getLongProperty("rocksdb.estimate-num-keys"));
+      long hits = table.getStatistics().getTickerCount(TickerType.BLOCK_CACHE_HIT);
+      long misses = table.getStatistics().getTickerCount(TickerType.BLOCK_CACHE_MISS);
+      System.out.println("Block cache hits "+ hits + ", misses " + misses
+          + ", hit ratio " + String.format("%.4f", (double)hits / Math.max(hits + misses, 1)));
+      System.out.println(table.getStatsReporter().summary());
+      if (table.getPerfStats() != null) {
+        System.out.println("Perf context per lookup by depth, times in ns:");
+        table.getPerfStats().print(System.out);
+      }
+      if (queryData.getPathCache() != null) {
+        System.out.println(queryData.getPathCache());
+      }
     }
   }
 
 
+  @State(Scope.Benchmark)
+  public static class BatchState {
+    @Param({"1", "16", "64", "256"})
+    public int batchSize;
+  }
+
+  // Keys which are not present in the table, taken from the last lookup of
+  // walks chosen by the distribution. Every walk ends in one of these lookups.
+  @State(Scope.Benchmark)
+  public static class MissingKeyState {
+    public byte[][] keys = new byte[10000][];
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkState state) throws Exception {
+      for (int i=0; i<keys.length; i++) {
+        keys[i] = state.queryData.missingKey(state.pathDistribution);
+      }
+    }
+  }
+
+  // Counts completed walks so the batched benchmark reports walks/s alongside
+  // the batches/s JMH measures for the benchmark method itself.
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class WalkCounter {
+    public long walks;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      walks = 0;
+    }
+  }
+
   public static void main(String[] args) throws Exception {
     org.openjdk.jmh.Main.main(args);
   }
@@ -53,10 +219,40 @@ public class BenchmarkDirectoryWalk {
   @Measurement(iterations = 20, time = 2000, timeUnit = MILLISECONDS)
   @BenchmarkMode(Mode.Throughput)
   public void walkRandomDirectory(Blackhole blackhole, BenchmarkState state) throws Exception {
-    int steps = state.queryData.walkRandom(0, 5);
-    if (steps != 10) {
-      throw new Exception("Expected 10 steps but only got "+steps);
+    state.walk();
+    blackhole.consume(1);
+  }
+
+  @Benchmark
+  @Threads(1)
+  @Warmup(iterations = 60, time = 2000, timeUnit = MILLISECONDS)
+  @Fork(value = 1, warmups = 0)
+  @Measurement(iterations = 20, time = 2000, timeUnit = MILLISECONDS)
+  @BenchmarkMode(Mode.Throughput)
+  public void walkRandomDirectoryBatch(Blackhole blackhole, BenchmarkState state,
+      BatchState batch, WalkCounter counter) throws Exception {
+    int steps = state.queryData.walkBatch(state.pathDistribution, batch.batchSize);
+    if (steps != state.levels * batch.batchSize) {
+      throw new Exception("Expected "+ state.levels * batch.batchSize +" steps but only got "+steps);
     }
+    counter.walks += batch.batchSize;
     blackhole.consume(1);
   }
+
+  @Benchmark
+  @Threads(1)
+  @Warmup(iterations = 30, time = 2000, timeUnit = MILLISECONDS)
+  @Fork(value = 1, warmups = 0)
+  @Measurement(iterations = 20, time = 2000, timeUnit = MILLISECONDS)
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(NANOSECONDS)
+  public void lookupMissingKey(Blackhole blackhole, BenchmarkState state,
+      MissingKeyState missing) throws Exception {
+    byte[] key = missing.keys[ThreadLocalRandom.current().nextInt(missing.keys.length)];
+    byte[] val = state.queryData.lookup(key);
+    if (val != null) {
+      throw new Exception("Expected the key to be missing");
+    }
+    blackhole.consume(val);
+  }
 }
@@ -0,0 +1,114 @@
+package com.sodonnell.rocksdb.benchmark;
+
+import com.sodonnell.rocksdb.TableConfig;
+import com.sodonnell.rocksdb.codec.ValueCodecs;
+import com.sodonnell.rocksdb.generate.GenerateData;
+import com.sodonnell.rocksdb.query.Query;
+import com.sodonnell.rocksdb.query.QueryData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+// Lists random directories with a prefix scan. Each fan-out needs a tree where
+// every directory has that many children, so a tree of about maxEntries
+// entries is generated under basePath on the first run and reused after.
+public class BenchmarkListing {
+
+  @State(Scope.Benchmark)
+  public static class ListingState {
+    // Children of each directory
+    @Param({"5", "100", "10000"})
+    public int fanout;
+
+    @Param({"BINARY"})
+    public String tableName;
+
+    @Param({"/tmp/rocksdb_listing"})
+    public String basePath;
+
+    // The tree has as many levels as fit in this many entries, and at least
+    // one, so there are many directories to pick from at the smaller fan-outs.
+    @Param({"1000000"})
+    public long maxEntries;
+
+    // Children returned by each scan. Larger directories are listed in pages.
+    @Param({"1000"})
+    public int pageSize;
+
+    @Param({"1024"})
+    public int cacheMB;
+
+    public int levels;
+    public QueryData queryData;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+      levels = 1;
+      while (GenerateData.subtreeSize(fanout, levels + 1, 0) - 1 <= maxEntries) {
+        levels++;
+      }
+      String treePath = basePath + "/fanout_" + fanout + "_levels_" + levels;
+      TableConfig conf = TableConfig.fromSystemProperties(cacheMB);
+      if (!new File(treePath, conf.tableDirName(tableName)).exists()) {
+        System.out.println("Generating " + tableName + " with " + fanout + " children per directory and "
+            + levels + " levels in " + treePath);
+        GenerateData gen = new GenerateData(treePath, tableName, fanout, levels, ValueCodecs.create(tableName));
+        gen.generateBulk();
+        gen.close();
+      }
+      queryData = new Query(treePath, fanout, levels, conf).getQueryObject(tableName);
+    }
+
+    // The ID of a random directory on the level above the leaves, so it has
+    // fanout children.
+    public long randomDirectory() {
+      int[] path = new int[levels - 1];
+      for (int i=0; i<path.length; i++) {
+        path[i] = ThreadLocalRandom.current().nextInt(fanout);
+      }
+      return GenerateData.directoryId(fanout, levels, path);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+      System.out.println(queryData.getTable().getStatsReporter().summary());
+      queryData.close();
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    org.openjdk.jmh.Main.main(args);
+  }
+
+  @Benchmark
+  @Threads(1)
+  @Warmup(iterations = 20, time = 2000, timeUnit = MILLISECONDS)
+  @Fork(value = 1, warmups = 0)
+  @Measurement(iterations = 20, time = 2000, timeUnit = MILLISECONDS)
+  @BenchmarkMode(Mode.Throughput)
+  public void listDirectory(Blackhole blackhole, ListingState state, EntryCounter counter)
+      throws Exception {
+    int children = state.queryData.listDirectory(state.randomDirectory(), state.pageSize, blackhole::consume);
+    if (children != state.fanout) {
+      throw new Exception("Expected " + state.fanout + " children but listed " + children);
+    }
+    counter.entries += children;
+  }
+
+}
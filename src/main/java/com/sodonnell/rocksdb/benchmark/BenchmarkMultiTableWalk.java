@@ -0,0 +1,137 @@
+package com.sodonnell.rocksdb.benchmark;
+
+import com.sodonnell.rocksdb.RocksDBTable;
+import com.sodonnell.rocksdb.SharedMemory;
+import com.sodonnell.rocksdb.TableConfig;
+import com.sodonnell.rocksdb.query.Query;
+import com.sodonnell.rocksdb.query.QueryData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.rocksdb.TickerType;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+// Walks random paths across several tables open in one process, as a server
+// holding several namespaces would. Comparing sharedCacheMB=0 (a cache per
+// table) with a shared cache of the same total size shows the effect of the
+// tables competing for one cache.
+public class BenchmarkMultiTableWalk {
+
+  @State(Scope.Benchmark)
+  public static class MultiTableState {
+    // Comma separated table names. Each walk picks one at random.
+    @Param({"FLAT_BUFFER,BINARY,BINARY_DICT"})
+    public String tableNames;
+
+    @Param({"/tmp/rocksdb"})
+    public String basePath;
+
+    @Param({"5"})
+    public int dirsPerLevel;
+
+    @Param({"10"})
+    public int levels;
+
+    // Block cache size of each table when the cache is not shared
+    @Param({"1024"})
+    public int cacheMB;
+
+    // Size of one cache shared by all the tables, 0 to give each table its
+    // own cache of cacheMB.
+    @Param({"0"})
+    public int sharedCacheMB;
+
+    // Memtable limit across all the tables, charged to the shared cache. 0
+    // uses a quarter of the shared cache.
+    @Param({"0"})
+    public int sharedWriteBufferMB;
+
+    public String[] names;
+    public QueryData[] tables;
+    private SharedMemory sharedMemory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+      TableConfig conf = TableConfig.fromSystemProperties(cacheMB);
+      if (sharedCacheMB > 0) {
+        sharedMemory = new SharedMemory(sharedCacheMB,
+            sharedWriteBufferMB > 0 ? sharedWriteBufferMB : sharedCacheMB / 4);
+        conf.setSharedMemory(sharedMemory);
+      }
+      Query q = new Query(basePath, dirsPerLevel, levels, conf);
+      names = tableNames.split(",");
+      tables = new QueryData[names.length];
+      for (int i=0; i<names.length; i++) {
+        tables[i] = q.getQueryObject(names[i].trim());
+      }
+    }
+
+    public int walk() throws Exception {
+      QueryData table = tables[ThreadLocalRandom.current().nextInt(tables.length)];
+      int steps = table.walkRandom(0, dirsPerLevel);
+      if (steps != levels) {
+        throw new Exception("Expected "+levels+" steps but only got "+steps);
+      }
+      return steps;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+      long totalUsage = 0;
+      for (int i=0; i<tables.length; i++) {
+        RocksDBTable table = tables[i].getTable();
+        long hits = table.getStatistics().getTickerCount(TickerType.BLOCK_CACHE_HIT);
+        long misses = table.getStatistics().getTickerCount(TickerType.BLOCK_CACHE_MISS);
+        // A shared cache reports the usage of all the tables
+        long usage = table.getBlockCache().getUsage();
+        totalUsage += usage;
+        System.out.println(names[i].trim() + " block cache hit ratio "
+            + String.format("%.4f", (double)hits / Math.max(hits + misses, 1))
+            + (sharedMemory == null ? ", cache usage " + usage + " bytes" : "")
+            + ", memtables " + table.getLongProperty("rocksdb.cur-size-all-mem-tables") + " bytes");
+      }
+      if (sharedMemory != null) {
+        // Includes the memtable memory charged to the cache
+        System.out.println("Shared " + sharedMemory + " usage " + sharedMemory.getCache().getUsage() + " bytes");
+      } else {
+        System.out.println("Total cache usage " + totalUsage + " bytes");
+      }
+      System.out.println("Process RSS " + CacheSweep.rssBytes() + " bytes");
+      for (QueryData q : tables) {
+        q.close();
+      }
+      if (sharedMemory != null) {
+        sharedMemory.close();
+      }
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    org.openjdk.jmh.Main.main(args);
+  }
+
+  @Benchmark
+  @Threads(1)
+  @Warmup(iterations = 30, time = 2000, timeUnit = MILLISECONDS)
+  @Fork(value = 1, warmups = 0)
+  @Measurement(iterations = 20, time = 2000, timeUnit = MILLISECONDS)
+  @BenchmarkMode(Mode.Throughput)
+  public void walkRandomTable(Blackhole blackhole, MultiTableState state) throws Exception {
+    blackhole.consume(state.walk());
+  }
+
+}
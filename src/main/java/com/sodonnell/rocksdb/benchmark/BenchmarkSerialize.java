@@ -2,6 +2,11 @@ package com.sodonnell.rocksdb.benchmark;
 
 import com.google.flatbuffers.FlatBufferBuilder;
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.sodonnell.rocksdb.codec.BinaryCodec;
+import com.sodonnell.rocksdb.codec.BinaryDirectoryReader;
+import com.sodonnell.rocksdb.codec.DirectoryRecord;
+import com.sodonnell.rocksdb.codec.ValueCodec;
+import com.sodonnell.rocksdb.codec.ValueCodecs;
 import com.sodonnell.rocksdb.flatbuffer.Acl;
 import com.sodonnell.rocksdb.flatbuffer.AclScope;
 import com.sodonnell.rocksdb.flatbuffer.AclType;
@@ -13,6 +18,7 @@ import org.openjdk.jmh.annotations.Fork;
 import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
@@ -33,6 +39,8 @@ public class BenchmarkSerialize {
 
     public byte[] protobytes;
     public byte[] flatbytes;
+    public byte[] binarybytes;
+    public BinaryDirectoryReader binaryReader = new BinaryDirectoryReader();
 
     public byte[] flatbufferObj() {
       FlatBufferBuilder builder = new FlatBufferBuilder(128);
@@ -97,14 +105,67 @@ public class BenchmarkSerialize {
       return bytes;
     }
 
+    public byte[] binaryObj() {
+      DirectoryRecord record = new DirectoryRecord()
+          .setCreationTime(System.currentTimeMillis())
+          .setModificationTime(System.currentTimeMillis())
+          .setUpdateId(System.currentTimeMillis())
+          .setObjectId(inodeID)
+          .setParentId(parentID)
+          .setName(directoryName)
+          .setOwner("sodonnell")
+          .setGroup("hadoop-read-write")
+          .setPermission((short)755)
+          .addAcl("otheruser", DirectoryRecord.ACL_USER, DirectoryRecord.SCOPE_DEFAULT, (short)7)
+          .addAcl("otheruser", DirectoryRecord.ACL_USER, DirectoryRecord.SCOPE_ACCESS, (short)7);
+      byte[] bytes = new BinaryCodec().encode(record);
+      System.out.println("size of binary bytes "+bytes.length);
+      return bytes;
+    }
+
     @Setup(Level.Trial)
     public void setUp() {
       flatbytes = flatbufferObj();
       protobytes = protoObj();
+      binarybytes = binaryObj();
     }
   }
 
 
+  // Runs the same benchmarks against any registered codec, through the
+  // ValueCodec interface.
+  @State(Scope.Benchmark)
+  public static class CodecState {
+    // BINARY_DICT builds its principal dictionary in memory as it encodes
+    @Param({"FLAT_BUFFER", "PROTO", "BINARY", "BINARY_DICT"})
+    public String codecName;
+
+    public ValueCodec codec;
+    public DirectoryRecord record = new DirectoryRecord();
+    public byte[] bytes;
+    // Decoded into by the benchmark thread, so decoding does not allocate a record
+    public DirectoryRecord decoded = new DirectoryRecord();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      codec = ValueCodecs.create(codecName);
+      long now = System.currentTimeMillis();
+      record.setObjectId(1234567890L)
+          .setParentId(9987654321L)
+          .setUpdateId(now)
+          .setCreationTime(now)
+          .setModificationTime(now)
+          .setName("thisIsTheDirectoryName")
+          .setOwner("sodonnell")
+          .setGroup("hadoop-read-write")
+          .setPermission((short)755)
+          .addAcl("otheruser", DirectoryRecord.ACL_USER, DirectoryRecord.SCOPE_DEFAULT, (short)7)
+          .addAcl("otheruser", DirectoryRecord.ACL_USER, DirectoryRecord.SCOPE_ACCESS, (short)7);
+      bytes = codec.encode(record);
+      System.out.println("Size of "+codecName+" bytes "+bytes.length);
+    }
+  }
+
   public static void main(String[] args) throws Exception {
     org.openjdk.jmh.Main.main(args);
   }
@@ -132,6 +193,16 @@ public class BenchmarkSerialize {
     blackhole.consume(dir.objectId());
   }
 
+  @Benchmark
+  @Threads(1)
+  @Warmup(iterations = 8)
+  @Fork(value = 1, warmups = 0)
+  @Measurement(iterations = 8, time = 1000, timeUnit = MILLISECONDS)
+  @BenchmarkMode(Mode.Throughput)
+  public void accessSingleLongBinary(Blackhole blackhole, BenchmarkSerialize.BenchmarkState state) {
+    blackhole.consume(state.binaryReader.wrap(state.binarybytes).objectId());
+  }
+
   @Benchmark
   @Threads(1)
   @Warmup(iterations = 8)
@@ -155,6 +226,16 @@ public class BenchmarkSerialize {
     blackhole.consume(dir.name());
   }
 
+  @Benchmark
+  @Threads(1)
+  @Warmup(iterations = 8)
+  @Fork(value = 1, warmups = 0)
+  @Measurement(iterations = 8, time = 1000, timeUnit = MILLISECONDS)
+  @BenchmarkMode(Mode.Throughput)
+  public void accessSingleStringBinary(Blackhole blackhole, BenchmarkSerialize.BenchmarkState state) {
+    blackhole.consume(state.binaryReader.wrap(state.binarybytes).name());
+  }
+
   @Benchmark
   @Threads(1)
   @Warmup(iterations = 8)
@@ -207,6 +288,31 @@ public class BenchmarkSerialize {
     }
   }
 
+  @Benchmark
+  @Threads(1)
+  @Warmup(iterations = 8)
+  @Fork(value = 1, warmups = 0)
+  @Measurement(iterations = 8, time = 1000, timeUnit = MILLISECONDS)
+  @BenchmarkMode(Mode.Throughput)
+  public void accessAllFieldsBinary(Blackhole blackhole, BenchmarkSerialize.BenchmarkState state) {
+    BinaryDirectoryReader dir = state.binaryReader.wrap(state.binarybytes);
+    blackhole.consume(dir.objectId());
+    blackhole.consume(dir.parentId());
+    blackhole.consume(dir.updateId());
+    blackhole.consume(dir.creationTime());
+    blackhole.consume(dir.modificationTime());
+    blackhole.consume(dir.name());
+    blackhole.consume(dir.owner());
+    blackhole.consume(dir.group());
+    blackhole.consume(dir.permission());
+    for (int i=0; i<dir.aclCount(); i++) {
+      blackhole.consume(dir.aclName(i));
+      blackhole.consume(dir.aclType(i));
+      blackhole.consume(dir.aclScope(i));
+      blackhole.consume(dir.aclPermissions(i));
+    }
+  }
+
   @Benchmark
   @Threads(1)
   @Warmup(iterations = 8)
@@ -234,6 +340,19 @@ public class BenchmarkSerialize {
     }
   }
 
+  @Benchmark
+  @Threads(1)
+  @Warmup(iterations = 8)
+  @Fork(value = 1, warmups = 0)
+  @Measurement(iterations = 8, time = 1000, timeUnit = MILLISECONDS)
+  @BenchmarkMode(Mode.Throughput)
+  public void accessSingleLongManyTimesBinary(Blackhole blackhole, BenchmarkSerialize.BenchmarkState state) {
+    BinaryDirectoryReader dir = state.binaryReader.wrap(state.binarybytes);
+    for (int i=0; i<20; i++) {
+      blackhole.consume(dir.objectId());
+    }
+  }
+
   @Benchmark
   @Threads(1)
   @Warmup(iterations = 8)
@@ -261,4 +380,48 @@ public class BenchmarkSerialize {
     }
   }
 
+  @Benchmark
+  @Threads(1)
+  @Warmup(iterations = 8)
+  @Fork(value = 1, warmups = 0)
+  @Measurement(iterations = 8, time = 1000, timeUnit = MILLISECONDS)
+  @BenchmarkMode(Mode.Throughput)
+  public void accessSingleStringManyTimesBinary(Blackhole blackhole, BenchmarkSerialize.BenchmarkState state) {
+    BinaryDirectoryReader dir = state.binaryReader.wrap(state.binarybytes);
+    for (int i=0; i<20; i++) {
+      blackhole.consume(dir.name());
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  @Warmup(iterations = 8)
+  @Fork(value = 1, warmups = 0)
+  @Measurement(iterations = 8, time = 1000, timeUnit = MILLISECONDS)
+  @BenchmarkMode(Mode.Throughput)
+  public void codecEncode(Blackhole blackhole, BenchmarkSerialize.CodecState state) {
+    blackhole.consume(state.codec.encode(state.record));
+  }
+
+  @Benchmark
+  @Threads(1)
+  @Warmup(iterations = 8)
+  @Fork(value = 1, warmups = 0)
+  @Measurement(iterations = 8, time = 1000, timeUnit = MILLISECONDS)
+  @BenchmarkMode(Mode.Throughput)
+  public void codecDecodeNextId(Blackhole blackhole, BenchmarkSerialize.CodecState state) {
+    blackhole.consume(state.codec.decodeNextId(state.bytes));
+  }
+
+  @Benchmark
+  @Threads(1)
+  @Warmup(iterations = 8)
+  @Fork(value = 1, warmups = 0)
+  @Measurement(iterations = 8, time = 1000, timeUnit = MILLISECONDS)
+  @BenchmarkMode(Mode.Throughput)
+  public void codecDecodeAll(Blackhole blackhole, BenchmarkSerialize.CodecState state) {
+    state.codec.decode(state.bytes, state.decoded);
+    blackhole.consume(state.decoded.getOwner());
+  }
+
 }
@@ -0,0 +1,103 @@
+package com.sodonnell.rocksdb.benchmark;
+
+import com.sodonnell.rocksdb.TableConfig;
+import com.sodonnell.rocksdb.generate.PathSamples;
+import com.sodonnell.rocksdb.query.Query;
+import com.sodonnell.rocksdb.query.QueryData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+// Walks to and lists the directories sampled from a table generated by
+// SkewedGenerateData. region=hot targets the directories with the most
+// children, and region=cold directories picked evenly from the whole tree.
+public class BenchmarkSkewedNamespace {
+
+  @State(Scope.Benchmark)
+  public static class SkewedState {
+    @Param({"BINARY"})
+    public String tableName;
+
+    @Param({"/tmp/rocksdb_skewed"})
+    public String basePath;
+
+    @Param({"hot", "cold"})
+    public String region;
+
+    @Param({"1024"})
+    public int cacheMB;
+
+    // Children returned by each scan when listing
+    @Param({"1000"})
+    public int pageSize;
+
+    public QueryData queryData;
+    public PathSamples samples;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+      TableConfig conf = TableConfig.fromSystemProperties(cacheMB);
+      // The tree shape is only used by the random walks, which are not run
+      queryData = new Query(basePath, 0, 0, conf).getQueryObject(tableName);
+      samples = PathSamples.load(queryData.getTable(), region);
+      System.out.println("Loaded " + samples.size() + " " + region + " directories");
+    }
+
+    public int randomSample() {
+      return ThreadLocalRandom.current().nextInt(samples.size());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+      System.out.println(queryData.getTable().getStatsReporter().summary());
+      queryData.close();
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    org.openjdk.jmh.Main.main(args);
+  }
+
+  @Benchmark
+  @Threads(1)
+  @Warmup(iterations = 20, time = 2000, timeUnit = MILLISECONDS)
+  @Fork(value = 1, warmups = 0)
+  @Measurement(iterations = 20, time = 2000, timeUnit = MILLISECONDS)
+  @BenchmarkMode(Mode.Throughput)
+  public long walkToDirectory(SkewedState state) throws Exception {
+    int i = state.randomSample();
+    long id = state.queryData.resolvePath(state.samples.getPath(i));
+    if (id != state.samples.getId(i)) {
+      throw new Exception("Expected to reach " + state.samples.getId(i) + " but reached " + id);
+    }
+    return id;
+  }
+
+  @Benchmark
+  @Threads(1)
+  @Warmup(iterations = 20, time = 2000, timeUnit = MILLISECONDS)
+  @Fork(value = 1, warmups = 0)
+  @Measurement(iterations = 20, time = 2000, timeUnit = MILLISECONDS)
+  @BenchmarkMode(Mode.Throughput)
+  public void listDirectory(Blackhole blackhole, SkewedState state, EntryCounter counter)
+      throws Exception {
+    long id = state.samples.getId(state.randomSample());
+    counter.entries += state.queryData.listDirectory(id, state.pageSize, blackhole::consume);
+  }
+
+}
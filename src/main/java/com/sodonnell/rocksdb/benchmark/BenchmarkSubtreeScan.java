@@ -0,0 +1,110 @@
+package com.sodonnell.rocksdb.benchmark;
+
+import com.sodonnell.rocksdb.TableConfig;
+import com.sodonnell.rocksdb.generate.GenerateData;
+import com.sodonnell.rocksdb.query.Query;
+import com.sodonnell.rocksdb.query.QueryData;
+import com.sodonnell.rocksdb.query.SubtreeScanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+// Scans the whole subtree under a random directory with a pool of threads.
+// Compare the entries/s at each parallelism to see how the scan scales with
+// cores. scanDepth=0 scans the whole table.
+public class BenchmarkSubtreeScan {
+
+  @State(Scope.Benchmark)
+  public static class ScanState {
+    @Param({"BINARY"})
+    public String tableName;
+
+    @Param({"/tmp/rocksdb"})
+    public String basePath;
+
+    @Param({"5"})
+    public int dirsPerLevel;
+
+    @Param({"10"})
+    public int levels;
+
+    @Param({"4096"})
+    public int cacheMB;
+
+    // Threads in the fork join pool
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    // Depth of the directory at the top of each scan. With 5x10 tables a
+    // directory at depth 2 has about 490k entries under it.
+    @Param({"2"})
+    public int scanDepth;
+
+    public QueryData queryData;
+    public SubtreeScanner scanner;
+    public long expectedEntries;
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+      TableConfig conf = TableConfig.fromSystemProperties(cacheMB);
+      queryData = new Query(basePath, dirsPerLevel, levels, conf).getQueryObject(tableName);
+      pool = new ForkJoinPool(parallelism);
+      scanner = new SubtreeScanner(queryData, pool);
+      expectedEntries = GenerateData.subtreeSize(dirsPerLevel, levels, scanDepth) - 1;
+    }
+
+    public long randomDirectory() {
+      int[] path = new int[scanDepth];
+      for (int i=0; i<path.length; i++) {
+        path[i] = ThreadLocalRandom.current().nextInt(dirsPerLevel);
+      }
+      return GenerateData.directoryId(dirsPerLevel, levels, path);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+      pool.shutdown();
+      System.out.println(queryData.getTable().getStatsReporter().summary());
+      queryData.close();
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    org.openjdk.jmh.Main.main(args);
+  }
+
+  @Benchmark
+  @Threads(1)
+  @Warmup(iterations = 10, time = 5000, timeUnit = MILLISECONDS)
+  @Fork(value = 1, warmups = 0)
+  @Measurement(iterations = 10, time = 5000, timeUnit = MILLISECONDS)
+  @BenchmarkMode(Mode.Throughput)
+  public long scanSubtree(ScanState state, EntryCounter counter) throws Exception {
+    // The visitor does the work a du would, summing a field of each entry
+    LongAdder sum = new LongAdder();
+    long entries = state.scanner.scan(state.randomDirectory(), (parentId, id, name, value) -> sum.add(id));
+    if (entries != state.expectedEntries) {
+      throw new Exception("Expected " + state.expectedEntries + " entries but scanned " + entries);
+    }
+    counter.entries += entries;
+    return sum.sum();
+  }
+
+}
@@ -0,0 +1,183 @@
+package com.sodonnell.rocksdb.benchmark;
+
+import com.sodonnell.rocksdb.KeyEncoding;
+import com.sodonnell.rocksdb.TableConfig;
+import com.sodonnell.rocksdb.query.DepthLatencyHistograms;
+import com.sodonnell.rocksdb.query.PathDistribution;
+import com.sodonnell.rocksdb.query.PathDistributions;
+import com.sodonnell.rocksdb.query.Query;
+import com.sodonnell.rocksdb.query.QueryData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.runner.IterationType;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+// Latency rather than throughput for the directory walk. JMH gives the
+// percentiles for a whole walk, and each lookup in the walks is also recorded
+// in a histogram for its depth, which is printed at the end of the trial. The
+// tables and their settings are the same as BenchmarkDirectoryWalk, eg:
+//
+//   BenchmarkWalkLatency -p tableName=LONG
+public class BenchmarkWalkLatency {
+
+  @State(Scope.Benchmark)
+  public static class DepthLatencyState {
+    public DepthLatencyHistograms histograms;
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkDirectoryWalk.BenchmarkState state) {
+      // Each level, plus the final lookup which finds nothing
+      histograms = new DepthLatencyHistograms(state.levels + 1);
+      state.queryData.setWalkObserver(histograms);
+    }
+
+    // Only the measurement iterations are recorded
+    @Setup(Level.Iteration)
+    public void startIteration(IterationParams params) {
+      histograms.setRecording(params.getType() == IterationType.MEASUREMENT);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      System.out.println();
+      System.out.println("Lookup latency by depth (us):");
+      histograms.printSummary(System.out);
+      System.out.println("Percentile distribution of all lookups (us):");
+      histograms.getTotal().outputPercentileDistribution(System.out, 1000.0);
+    }
+  }
+
+  // Opens the table before each iteration and closes it afterwards, so every
+  // walk of walkLatencyColdCache starts with an empty block cache. The table
+  // parameters match BenchmarkDirectoryWalk.
+  @State(Scope.Benchmark)
+  public static class ColdCacheState {
+    @Param({"FLAT_BUFFER_LONG", "FLAT_BUFFER", "PROTO", "PROTO_LONG", "BINARY", "BINARY_DICT"})
+    public String tableName;
+
+    @Param({"UTF_16BE"})
+    public String keyEncoding;
+
+    @Param({"/tmp/rocksdb"})
+    public String basePath;
+
+    @Param({"5"})
+    public int dirsPerLevel;
+
+    @Param({"10"})
+    public int levels;
+
+    @Param({"4096"})
+    public int cacheMB;
+
+    @Param({"uniform"})
+    public String distribution;
+
+    // Also drop the OS page cache before each walk, so the SST blocks come
+    // from disk. This needs root, and is skipped with a warning without it.
+    @Param({"false"})
+    public boolean dropOsCaches;
+
+    public QueryData queryData;
+    public PathDistribution pathDistribution;
+    public DepthLatencyHistograms histograms;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+      histograms = new DepthLatencyHistograms(levels + 1);
+      pathDistribution = PathDistributions.create(distribution, dirsPerLevel, levels);
+    }
+
+    @Setup(Level.Iteration)
+    public void open() throws Exception {
+      if (dropOsCaches) {
+        dropOsCaches();
+      }
+      TableConfig conf = new TableConfig(cacheMB).setKeyEncoding(KeyEncoding.valueOf(keyEncoding));
+      queryData = new Query(basePath, dirsPerLevel, levels, conf).getQueryObject(tableName);
+      queryData.setWalkObserver(histograms);
+    }
+
+    public int walk() throws Exception {
+      int steps = queryData.walk(pathDistribution);
+      if (steps != levels) {
+        throw new Exception("Expected "+levels+" steps but only got "+steps);
+      }
+      return steps;
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() throws Exception {
+      queryData.close();
+      queryData = null;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      System.out.println();
+      System.out.println("Cold cache lookup latency by depth (us):");
+      histograms.printSummary(System.out);
+    }
+
+    private void dropOsCaches() throws InterruptedException {
+      try {
+        new ProcessBuilder("sync").inheritIO().start().waitFor();
+        Files.write(Paths.get("/proc/sys/vm/drop_caches"), "3".getBytes(StandardCharsets.US_ASCII));
+      } catch (IOException e) {
+        System.out.println("Unable to drop the OS caches, continuing without: " + e.getMessage());
+        dropOsCaches = false;
+      }
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    org.openjdk.jmh.Main.main(args);
+  }
+
+  @Benchmark
+  @Threads(1)
+  @Warmup(iterations = 30, time = 2000, timeUnit = MILLISECONDS)
+  @Fork(value = 1, warmups = 0)
+  @Measurement(iterations = 20, time = 2000, timeUnit = MILLISECONDS)
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(MICROSECONDS)
+  public void walkLatency(Blackhole blackhole, BenchmarkDirectoryWalk.BenchmarkState state,
+      DepthLatencyState latency) throws Exception {
+    blackhole.consume(state.walk());
+  }
+
+  // Each iteration is a single walk on a table opened just before it, so
+  // every walk starts with an empty block cache. JMH prints the time of each
+  // iteration as well as the summary.
+  @Benchmark
+  @Threads(1)
+  @Warmup(iterations = 0)
+  @Fork(value = 1, warmups = 0)
+  @Measurement(iterations = 200, batchSize = 1)
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(MICROSECONDS)
+  public void walkLatencyColdCache(Blackhole blackhole, ColdCacheState state) throws Exception {
+    blackhole.consume(state.walk());
+  }
+}
@@ -0,0 +1,132 @@
+package com.sodonnell.rocksdb.benchmark;
+
+import com.sodonnell.rocksdb.TableConfig;
+import com.sodonnell.rocksdb.query.PathDistributions;
+import com.sodonnell.rocksdb.query.Query;
+import com.sodonnell.rocksdb.query.QueryData;
+import org.rocksdb.Statistics;
+import org.rocksdb.TickerType;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+// Walks a table with a range of block cache sizes, and writes the walks/s,
+// block cache hit ratio and process RSS at each size to a CSV file. The table
+// is reopened with a new cache for each size, so each point starts cold and is
+// warmed up before it is measured.
+public class CacheSweep {
+
+  private final Query query;
+  private final String table;
+  private final int threads;
+  private final long warmupSecs;
+  private final long durationSecs;
+
+  public CacheSweep(Query query, String table, int threads, long warmupSecs, long durationSecs) {
+    this.query = query;
+    this.table = table;
+    this.threads = threads;
+    this.warmupSecs = warmupSecs;
+    this.durationSecs = durationSecs;
+  }
+
+  public void run(List<Integer> cacheSizes, String outputFile) throws Exception {
+    try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(outputFile)))) {
+      out.println("table,cache_mb,walks_per_sec,lookups_per_sec,block_cache_hit_ratio,"
+          + "block_cache_usage_bytes,rss_bytes");
+      for (int cacheMB : cacheSizes) {
+        String line = runPoint(cacheMB);
+        System.out.println(line);
+        out.println(line);
+        out.flush();
+      }
+    }
+    System.out.println("Wrote "+outputFile);
+  }
+
+  private String runPoint(int cacheMB) throws Exception {
+    query.getTableConfig().setCacheMB(cacheMB);
+    QueryData q = query.getQueryObject(table);
+    try {
+      query.runWalks(q, threads, 0, warmupSecs);
+      Statistics stats = q.getTable().getStatistics();
+      long hits = stats.getTickerCount(TickerType.BLOCK_CACHE_HIT);
+      long misses = stats.getTickerCount(TickerType.BLOCK_CACHE_MISS);
+      Query.WalkResult result = query.runWalks(q, threads, 0, durationSecs);
+      hits = stats.getTickerCount(TickerType.BLOCK_CACHE_HIT) - hits;
+      misses = stats.getTickerCount(TickerType.BLOCK_CACHE_MISS) - misses;
+      return String.format("%s,%d,%.0f,%.0f,%.4f,%d,%d", table, cacheMB,
+          result.walksPerSecond(), result.lookupsPerSecond(),
+          (double)hits / Math.max(hits + misses, 1),
+          q.getTable().getLongProperty("rocksdb.block-cache-usage"), rssBytes());
+    } finally {
+      q.close();
+    }
+  }
+
+  // The resident set size of this process, or -1 if /proc is not available.
+  static long rssBytes() {
+    try {
+      for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+        if (line.startsWith("VmRSS:")) {
+          return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+        }
+      }
+    } catch (IOException | NumberFormatException e) {
+      System.out.println("Unable to read the RSS "+e.getMessage());
+    }
+    return -1;
+  }
+
+  public static void main(String[] args) {
+    String cacheSizes = "512,1024,2048,4096,8192";
+    int threads = 1;
+    long warmup = 30;
+    long duration = 30;
+    String output = "cache_sweep.csv";
+    String distribution = "uniform";
+    List<String> positional = new ArrayList<>();
+    for (int i=0; i<args.length; i++) {
+      if (args[i].equals("--cache-sizes")) {
+        cacheSizes = args[++i];
+      } else if (args[i].equals("--threads")) {
+        threads = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("--warmup")) {
+        warmup = Long.parseLong(args[++i]);
+      } else if (args[i].equals("--duration")) {
+        duration = Long.parseLong(args[++i]);
+      } else if (args[i].equals("--output")) {
+        output = args[++i];
+      } else if (args[i].equals("--distribution")) {
+        distribution = args[++i];
+      } else {
+        positional.add(args[i]);
+      }
+    }
+    args = positional.toArray(new String[0]);
+    if (args.length < 4) {
+      System.out.println("Usage: CacheSweep /base/path/of/rocks/dbs dirs_per_level levels <TABLE> "
+          + "[--cache-sizes 512,1024,...] [--threads N] [--warmup secs] [--duration secs] [--output file.csv] "
+          + "[--distribution spec]");
+      return;
+    }
+    List<Integer> sizes = new ArrayList<>();
+    for (String s : cacheSizes.split(",")) {
+      sizes.add(Integer.parseInt(s.trim()));
+    }
+    Query q = new Query(args[0], Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+        TableConfig.fromSystemProperties(sizes.get(0)));
+    try {
+      q.setDistribution(PathDistributions.create(distribution, Integer.parseInt(args[1]),
+          Integer.parseInt(args[2])));
+      new CacheSweep(q, args[3], threads, warmup, duration).run(sizes, output);
+    } catch (Exception e) {
+      System.out.println("Exception! "+ e.getMessage() + " " + e.getCause());
+    }
+  }
+
+}
@@ -0,0 +1,20 @@
+package com.sodonnell.rocksdb.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Counts the entries a listing or scan benchmark returns, so the entries/s is
+// reported alongside the operations/s JMH measures for the benchmark itself.
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class EntryCounter {
+  public long entries;
+
+  @Setup(Level.Iteration)
+  public void reset() {
+    entries = 0;
+  }
+}
@@ -0,0 +1,92 @@
+package com.sodonnell.rocksdb.codec;
+
+import com.sodonnell.rocksdb.ByteUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// A hand rolled format for the directory entry, with the longs at fixed
+// offsets so the object ID can be read without parsing anything. See
+// BinaryDirectoryReader for the layout.
+public class BinaryCodec implements ValueCodec {
+
+  private final ThreadLocal<BinaryDirectoryReader> reader =
+      ThreadLocal.withInitial(BinaryDirectoryReader::new);
+
+  @Override
+  public byte[] encode(DirectoryRecord record) {
+    byte[] name = utf8(record.getName());
+    byte[] owner = utf8(record.getOwner());
+    byte[] group = utf8(record.getGroup());
+    int aclCount = record.getAclCount();
+    if (aclCount > 255) {
+      throw new IllegalArgumentException("Too many ACLs to encode: " + aclCount);
+    }
+    byte[][] aclNames = new byte[aclCount][];
+    int size = BinaryDirectoryReader.NAME + 6 + name.length + owner.length + group.length + 1;
+    for (int i=0; i<aclCount; i++) {
+      aclNames[i] = utf8(record.getAclName(i));
+      size += 2 + aclNames[i].length + BinaryDirectoryReader.ACL_FIXED_BYTES;
+    }
+
+    byte[] bytes = new byte[size];
+    ByteUtils.longToBytes(record.getObjectId(), bytes, BinaryDirectoryReader.OBJECT_ID);
+    ByteUtils.longToBytes(record.getParentId(), bytes, BinaryDirectoryReader.PARENT_ID);
+    ByteUtils.longToBytes(record.getUpdateId(), bytes, BinaryDirectoryReader.UPDATE_ID);
+    ByteUtils.longToBytes(record.getCreationTime(), bytes, BinaryDirectoryReader.CREATION_TIME);
+    ByteUtils.longToBytes(record.getModificationTime(), bytes, BinaryDirectoryReader.MODIFICATION_TIME);
+    int off = putShort(record.getPermission(), bytes, BinaryDirectoryReader.PERMISSION);
+    off = putString(name, bytes, off);
+    off = putString(owner, bytes, off);
+    off = putString(group, bytes, off);
+    bytes[off++] = (byte)aclCount;
+    for (int i=0; i<aclCount; i++) {
+      off = putString(aclNames[i], bytes, off);
+      bytes[off++] = record.getAclType(i);
+      bytes[off++] = record.getAclScope(i);
+      off = putShort(record.getAclPermissions(i), bytes, off);
+    }
+    return bytes;
+  }
+
+  @Override
+  public long decodeNextId(byte[] value) {
+    return ByteUtils.bytesToLong(value, BinaryDirectoryReader.OBJECT_ID);
+  }
+
+  @Override
+  public long decodeNextId(ByteBuffer value) {
+    return ByteUtils.bytesToLong(value, value.position() + BinaryDirectoryReader.OBJECT_ID);
+  }
+
+  @Override
+  public void decode(byte[] value, DirectoryRecord into) {
+    reader.get().wrap(value).readInto(into);
+  }
+
+  @Override
+  public void decode(ByteBuffer value, DirectoryRecord into) {
+    reader.get().wrap(value).readInto(into);
+  }
+
+  private static byte[] utf8(String s) {
+    byte[] bytes = s == null ? new byte[0] : s.getBytes(StandardCharsets.UTF_8);
+    if (bytes.length > 0xFFFF) {
+      throw new IllegalArgumentException("String too long to encode: " + bytes.length + " bytes");
+    }
+    return bytes;
+  }
+
+  private static int putString(byte[] s, byte[] dest, int off) {
+    off = putShort(s.length, dest, off);
+    System.arraycopy(s, 0, dest, off, s.length);
+    return off + s.length;
+  }
+
+  private static int putShort(int value, byte[] dest, int off) {
+    dest[off] = (byte)(value >> 8);
+    dest[off + 1] = (byte)value;
+    return off + 2;
+  }
+
+}
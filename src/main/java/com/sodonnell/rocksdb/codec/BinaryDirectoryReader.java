@@ -0,0 +1,204 @@
+package com.sodonnell.rocksdb.codec;
+
+import com.sodonnell.rocksdb.ByteUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// A flyweight over a value written by BinaryCodec. Wrapping a value does not
+// copy or parse it - each field is read from the underlying bytes when it is
+// asked for. The longs and the permission are at fixed offsets, so reading
+// them is a single load. A reader can be reused for any number of values, but
+// is not thread safe.
+//
+// Layout, all big endian:
+//
+//   0  objectId          8 bytes
+//   8  parentId          8 bytes
+//   16 updateId          8 bytes
+//   24 creationTime      8 bytes
+//   32 modificationTime  8 bytes
+//   40 permission        2 bytes
+//   42 name, owner, group - each a 2 byte length and then the UTF-8 bytes
+//      ACL count         1 byte
+//      ACLs              each a 2 byte name length, UTF-8 name, type (1 byte),
+//                        scope (1 byte) and permissions (2 bytes)
+public class BinaryDirectoryReader {
+
+  static final int OBJECT_ID = 0;
+  static final int PARENT_ID = 8;
+  static final int UPDATE_ID = 16;
+  static final int CREATION_TIME = 24;
+  static final int MODIFICATION_TIME = 32;
+  static final int PERMISSION = 40;
+  static final int NAME = 42;
+  // Bytes in an ACL after its name
+  static final int ACL_FIXED_BYTES = 4;
+
+  private byte[] array;
+  private ByteBuffer buffer;
+  private int base;
+  private byte[] scratch = new byte[64];
+  // Offset of the ACL count, worked out on first use
+  private int aclStart = -1;
+
+  public BinaryDirectoryReader wrap(byte[] value) {
+    return wrap(value, 0);
+  }
+
+  public BinaryDirectoryReader wrap(byte[] value, int offset) {
+    this.array = value;
+    this.buffer = null;
+    this.base = offset;
+    this.aclStart = -1;
+    return this;
+  }
+
+  // Reads the value starting at the buffer position. The buffer position and
+  // byte order are not changed.
+  public BinaryDirectoryReader wrap(ByteBuffer value) {
+    if (value.hasArray()) {
+      return wrap(value.array(), value.arrayOffset() + value.position());
+    }
+    this.array = null;
+    this.buffer = value;
+    this.base = value.position();
+    this.aclStart = -1;
+    return this;
+  }
+
+  public long objectId() {
+    return getLong(OBJECT_ID);
+  }
+
+  public long parentId() {
+    return getLong(PARENT_ID);
+  }
+
+  public long updateId() {
+    return getLong(UPDATE_ID);
+  }
+
+  public long creationTime() {
+    return getLong(CREATION_TIME);
+  }
+
+  public long modificationTime() {
+    return getLong(MODIFICATION_TIME);
+  }
+
+  public short permission() {
+    return (short)getShort(PERMISSION);
+  }
+
+  public String name() {
+    return getString(NAME);
+  }
+
+  public String owner() {
+    return getString(skipString(NAME));
+  }
+
+  public String group() {
+    return getString(skipString(skipString(NAME)));
+  }
+
+  public int aclCount() {
+    return getByte(aclStart()) & 0xFF;
+  }
+
+  public String aclName(int i) {
+    return getString(aclOffset(i));
+  }
+
+  public byte aclType(int i) {
+    return getByte(skipString(aclOffset(i)));
+  }
+
+  public byte aclScope(int i) {
+    return getByte(skipString(aclOffset(i)) + 1);
+  }
+
+  public short aclPermissions(int i) {
+    return (short)getShort(skipString(aclOffset(i)) + 2);
+  }
+
+  // Copies every field into the record.
+  public void readInto(DirectoryRecord into) {
+    into.clear()
+        .setObjectId(objectId())
+        .setParentId(parentId())
+        .setUpdateId(updateId())
+        .setCreationTime(creationTime())
+        .setModificationTime(modificationTime())
+        .setPermission(permission());
+    int off = NAME;
+    into.setName(getString(off));
+    off = skipString(off);
+    into.setOwner(getString(off));
+    off = skipString(off);
+    into.setGroup(getString(off));
+    off = skipString(off);
+    int count = getByte(off) & 0xFF;
+    off++;
+    for (int i=0; i<count; i++) {
+      String aclName = getString(off);
+      off = skipString(off);
+      into.addAcl(aclName, getByte(off), getByte(off + 1), (short)getShort(off + 2));
+      off += ACL_FIXED_BYTES;
+    }
+  }
+
+  private int aclStart() {
+    if (aclStart < 0) {
+      aclStart = skipString(skipString(skipString(NAME)));
+    }
+    return aclStart;
+  }
+
+  private int aclOffset(int index) {
+    int off = aclStart() + 1;
+    for (int i=0; i<index; i++) {
+      off = skipString(off) + ACL_FIXED_BYTES;
+    }
+    return off;
+  }
+
+  private int skipString(int off) {
+    return off + 2 + getShort(off);
+  }
+
+  private String getString(int off) {
+    int length = getShort(off);
+    if (array != null) {
+      return new String(array, base + off + 2, length, StandardCharsets.UTF_8);
+    }
+    if (scratch.length < length) {
+      scratch = new byte[length * 2];
+    }
+    for (int i=0; i<length; i++) {
+      scratch[i] = buffer.get(base + off + 2 + i);
+    }
+    return new String(scratch, 0, length, StandardCharsets.UTF_8);
+  }
+
+  private long getLong(int off) {
+    if (array != null) {
+      return ByteUtils.bytesToLong(array, base + off);
+    }
+    return ByteUtils.bytesToLong(buffer, base + off);
+  }
+
+  // Unsigned 2 byte value
+  private int getShort(int off) {
+    return (getByte(off) & 0xFF) << 8 | (getByte(off + 1) & 0xFF);
+  }
+
+  private byte getByte(int off) {
+    if (array != null) {
+      return array[base + off];
+    }
+    return buffer.get(base + off);
+  }
+
+}
@@ -0,0 +1,125 @@
+package com.sodonnell.rocksdb.codec;
+
+import com.sodonnell.rocksdb.ByteUtils;
+import com.sodonnell.rocksdb.RocksDBTable;
+import org.rocksdb.RocksDBException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// The BINARY format, but with the owner, group and ACL names replaced by
+// varint IDs from a PrincipalDictionary kept in the table. The longs and the
+// permission are at the same fixed offsets as BINARY. After them:
+//
+//   owner ID   varint
+//   group ID   varint
+//   name       2 byte length and then the UTF-8 bytes
+//   ACL count  1 byte
+//   ACLs       each a varint principal ID, type (1 byte), scope (1 byte) and
+//              permissions (2 bytes)
+public class DictionaryBinaryCodec implements ValueCodec {
+
+  private final PrincipalDictionary dictionary = new PrincipalDictionary();
+
+  public PrincipalDictionary getDictionary() {
+    return dictionary;
+  }
+
+  @Override
+  public void open(RocksDBTable table) throws RocksDBException {
+    dictionary.load(table);
+  }
+
+  @Override
+  public void close(RocksDBTable table) throws RocksDBException {
+    dictionary.save(table);
+  }
+
+  @Override
+  public byte[] encode(DirectoryRecord record) {
+    int owner = dictionary.idFor(record.getOwner());
+    int group = dictionary.idFor(record.getGroup());
+    byte[] name = record.getName().getBytes(StandardCharsets.UTF_8);
+    int aclCount = record.getAclCount();
+    if (aclCount > 255) {
+      throw new IllegalArgumentException("Too many ACLs to encode: " + aclCount);
+    }
+    int[] aclIds = new int[aclCount];
+    int size = BinaryDirectoryReader.NAME + ByteUtils.varIntSize(owner) + ByteUtils.varIntSize(group)
+        + 2 + name.length + 1;
+    for (int i=0; i<aclCount; i++) {
+      aclIds[i] = dictionary.idFor(record.getAclName(i));
+      size += ByteUtils.varIntSize(aclIds[i]) + BinaryDirectoryReader.ACL_FIXED_BYTES;
+    }
+
+    byte[] bytes = new byte[size];
+    ByteUtils.longToBytes(record.getObjectId(), bytes, BinaryDirectoryReader.OBJECT_ID);
+    ByteUtils.longToBytes(record.getParentId(), bytes, BinaryDirectoryReader.PARENT_ID);
+    ByteUtils.longToBytes(record.getUpdateId(), bytes, BinaryDirectoryReader.UPDATE_ID);
+    ByteUtils.longToBytes(record.getCreationTime(), bytes, BinaryDirectoryReader.CREATION_TIME);
+    ByteUtils.longToBytes(record.getModificationTime(), bytes, BinaryDirectoryReader.MODIFICATION_TIME);
+    int off = putShort(record.getPermission(), bytes, BinaryDirectoryReader.PERMISSION);
+    off += ByteUtils.writeVarInt(owner, bytes, off);
+    off += ByteUtils.writeVarInt(group, bytes, off);
+    off = putShort(name.length, bytes, off);
+    System.arraycopy(name, 0, bytes, off, name.length);
+    off += name.length;
+    bytes[off++] = (byte)aclCount;
+    for (int i=0; i<aclCount; i++) {
+      off += ByteUtils.writeVarInt(aclIds[i], bytes, off);
+      bytes[off++] = record.getAclType(i);
+      bytes[off++] = record.getAclScope(i);
+      off = putShort(record.getAclPermissions(i), bytes, off);
+    }
+    return bytes;
+  }
+
+  @Override
+  public long decodeNextId(byte[] value) {
+    return ByteUtils.bytesToLong(value, BinaryDirectoryReader.OBJECT_ID);
+  }
+
+  @Override
+  public long decodeNextId(ByteBuffer value) {
+    return ByteUtils.bytesToLong(value, value.position() + BinaryDirectoryReader.OBJECT_ID);
+  }
+
+  @Override
+  public void decode(byte[] value, DirectoryRecord into) {
+    into.clear()
+        .setObjectId(ByteUtils.bytesToLong(value, BinaryDirectoryReader.OBJECT_ID))
+        .setParentId(ByteUtils.bytesToLong(value, BinaryDirectoryReader.PARENT_ID))
+        .setUpdateId(ByteUtils.bytesToLong(value, BinaryDirectoryReader.UPDATE_ID))
+        .setCreationTime(ByteUtils.bytesToLong(value, BinaryDirectoryReader.CREATION_TIME))
+        .setModificationTime(ByteUtils.bytesToLong(value, BinaryDirectoryReader.MODIFICATION_TIME))
+        .setPermission((short)getShort(value, BinaryDirectoryReader.PERMISSION));
+    int off = BinaryDirectoryReader.NAME;
+    int owner = ByteUtils.readVarInt(value, off);
+    off += ByteUtils.varIntSize(owner);
+    int group = ByteUtils.readVarInt(value, off);
+    off += ByteUtils.varIntSize(group);
+    into.setOwner(dictionary.nameFor(owner));
+    into.setGroup(dictionary.nameFor(group));
+    int nameLength = getShort(value, off);
+    into.setName(new String(value, off + 2, nameLength, StandardCharsets.UTF_8));
+    off += 2 + nameLength;
+    int count = value[off++] & 0xFF;
+    for (int i=0; i<count; i++) {
+      int id = ByteUtils.readVarInt(value, off);
+      off += ByteUtils.varIntSize(id);
+      into.addAcl(dictionary.nameFor(id), value[off], value[off + 1], (short)getShort(value, off + 2));
+      off += BinaryDirectoryReader.ACL_FIXED_BYTES;
+    }
+  }
+
+  private static int getShort(byte[] src, int off) {
+    return (src[off] & 0xFF) << 8 | (src[off + 1] & 0xFF);
+  }
+
+  private static int putShort(int value, byte[] dest, int off) {
+    dest[off] = (byte)(value >> 8);
+    dest[off + 1] = (byte)value;
+    return off + 2;
+  }
+
+}
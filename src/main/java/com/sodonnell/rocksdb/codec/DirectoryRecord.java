@@ -0,0 +1,166 @@
+package com.sodonnell.rocksdb.codec;
+
+import java.util.Arrays;
+
+// A mutable holder for the fields of a directory entry. Codecs encode from it
+// and decode into it, so one record can be reused for many values.
+public class DirectoryRecord {
+
+  // ACL type and scope values, which match the Flatbuffer and Protobuf enums.
+  public static final byte ACL_USER = 0;
+  public static final byte ACL_GROUP = 1;
+  public static final byte ACL_MASK = 2;
+  public static final byte ACL_OTHER = 3;
+
+  public static final byte SCOPE_ACCESS = 0;
+  public static final byte SCOPE_DEFAULT = 1;
+
+  private long objectId;
+  private long updateId;
+  private long parentId;
+  private long creationTime;
+  private long modificationTime;
+  private String name;
+  private String owner;
+  private String group;
+  private short permission;
+
+  private int aclCount = 0;
+  private String[] aclNames = new String[2];
+  private byte[] aclTypes = new byte[2];
+  private byte[] aclScopes = new byte[2];
+  private short[] aclPermissions = new short[2];
+
+  public DirectoryRecord clear() {
+    objectId = 0;
+    updateId = 0;
+    parentId = 0;
+    creationTime = 0;
+    modificationTime = 0;
+    name = null;
+    owner = null;
+    group = null;
+    permission = 0;
+    Arrays.fill(aclNames, 0, aclCount, null);
+    aclCount = 0;
+    return this;
+  }
+
+  public DirectoryRecord addAcl(String aclName, byte type, byte scope, short permissions) {
+    if (aclCount == aclNames.length) {
+      int size = aclCount * 2;
+      aclNames = Arrays.copyOf(aclNames, size);
+      aclTypes = Arrays.copyOf(aclTypes, size);
+      aclScopes = Arrays.copyOf(aclScopes, size);
+      aclPermissions = Arrays.copyOf(aclPermissions, size);
+    }
+    aclNames[aclCount] = aclName;
+    aclTypes[aclCount] = type;
+    aclScopes[aclCount] = scope;
+    aclPermissions[aclCount] = permissions;
+    aclCount++;
+    return this;
+  }
+
+  public long getObjectId() {
+    return objectId;
+  }
+
+  public DirectoryRecord setObjectId(long objectId) {
+    this.objectId = objectId;
+    return this;
+  }
+
+  public long getUpdateId() {
+    return updateId;
+  }
+
+  public DirectoryRecord setUpdateId(long updateId) {
+    this.updateId = updateId;
+    return this;
+  }
+
+  public long getParentId() {
+    return parentId;
+  }
+
+  public DirectoryRecord setParentId(long parentId) {
+    this.parentId = parentId;
+    return this;
+  }
+
+  public long getCreationTime() {
+    return creationTime;
+  }
+
+  public DirectoryRecord setCreationTime(long creationTime) {
+    this.creationTime = creationTime;
+    return this;
+  }
+
+  public long getModificationTime() {
+    return modificationTime;
+  }
+
+  public DirectoryRecord setModificationTime(long modificationTime) {
+    this.modificationTime = modificationTime;
+    return this;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public DirectoryRecord setName(String name) {
+    this.name = name;
+    return this;
+  }
+
+  public String getOwner() {
+    return owner;
+  }
+
+  public DirectoryRecord setOwner(String owner) {
+    this.owner = owner;
+    return this;
+  }
+
+  public String getGroup() {
+    return group;
+  }
+
+  public DirectoryRecord setGroup(String group) {
+    this.group = group;
+    return this;
+  }
+
+  public short getPermission() {
+    return permission;
+  }
+
+  public DirectoryRecord setPermission(short permission) {
+    this.permission = permission;
+    return this;
+  }
+
+  public int getAclCount() {
+    return aclCount;
+  }
+
+  public String getAclName(int i) {
+    return aclNames[i];
+  }
+
+  public byte getAclType(int i) {
+    return aclTypes[i];
+  }
+
+  public byte getAclScope(int i) {
+    return aclScopes[i];
+  }
+
+  public short getAclPermissions(int i) {
+    return aclPermissions[i];
+  }
+
+}
@@ -0,0 +1,99 @@
+package com.sodonnell.rocksdb.codec;
+
+import com.google.flatbuffers.FlatBufferBuilder;
+import com.sodonnell.rocksdb.flatbuffer.Acl;
+import com.sodonnell.rocksdb.flatbuffer.DirectoryInfo;
+
+import java.nio.ByteBuffer;
+
+public class FlatBufferCodec implements ValueCodec {
+
+  // Accessor objects reused by each thread, so reading in place from a
+  // ByteBuffer does not allocate.
+  private final ThreadLocal<DirectoryInfo> dirInfo = ThreadLocal.withInitial(DirectoryInfo::new);
+  private final ThreadLocal<Acl> acl = ThreadLocal.withInitial(Acl::new);
+
+  @Override
+  public byte[] encode(DirectoryRecord record) {
+    FlatBufferBuilder builder = new FlatBufferBuilder(250);
+    int nameOffset = builder.createString(record.getName());
+    int ownerOffset = builder.createString(record.getOwner());
+    int groupOffset = builder.createString(record.getGroup());
+
+    int[] aclNameOffsets = new int[record.getAclCount()];
+    for (int i=0; i<aclNameOffsets.length; i++) {
+      aclNameOffsets[i] = sharedString(builder, record, i, aclNameOffsets);
+    }
+    int[] aclOffsets = new int[record.getAclCount()];
+    for (int i=0; i<aclOffsets.length; i++) {
+      aclOffsets[i] = Acl.createAcl(builder, aclNameOffsets[i], record.getAclType(i),
+          record.getAclScope(i), record.getAclPermissions(i));
+    }
+    int aclsOffset = DirectoryInfo.createAclsVector(builder, aclOffsets);
+
+    DirectoryInfo.startDirectoryInfo(builder);
+    DirectoryInfo.addCreationTime(builder, record.getCreationTime());
+    DirectoryInfo.addModificationTime(builder, record.getModificationTime());
+    DirectoryInfo.addObjectId(builder, record.getObjectId());
+    DirectoryInfo.addParentId(builder, record.getParentId());
+    DirectoryInfo.addUpdateId(builder, record.getUpdateId());
+    DirectoryInfo.addName(builder, nameOffset);
+    DirectoryInfo.addOwner(builder, ownerOffset);
+    DirectoryInfo.addGroup(builder, groupOffset);
+    DirectoryInfo.addPermissions(builder, record.getPermission());
+    DirectoryInfo.addAcls(builder, aclsOffset);
+
+    int dirInfo = DirectoryInfo.endDirectoryInfo(builder);
+    builder.finish(dirInfo);
+    return builder.sizedByteArray();
+  }
+
+  // ACLs with the same principal share a single copy of the string.
+  private static int sharedString(FlatBufferBuilder builder, DirectoryRecord record,
+      int index, int[] offsets) {
+    for (int i=0; i<index; i++) {
+      if (record.getAclName(i).equals(record.getAclName(index))) {
+        return offsets[i];
+      }
+    }
+    return builder.createString(record.getAclName(index));
+  }
+
+  @Override
+  public long decodeNextId(byte[] value) {
+    return DirectoryInfo.getRootAsDirectoryInfo(ByteBuffer.wrap(value)).objectId();
+  }
+
+  // Reads the flatbuffer in place, reusing the accessor object. This sets the
+  // buffer to little endian.
+  @Override
+  public long decodeNextId(ByteBuffer value) {
+    return DirectoryInfo.getRootAsDirectoryInfo(value, dirInfo.get()).objectId();
+  }
+
+  @Override
+  public void decode(byte[] value, DirectoryRecord into) {
+    decode(ByteBuffer.wrap(value), into);
+  }
+
+  @Override
+  public void decode(ByteBuffer value, DirectoryRecord into) {
+    DirectoryInfo dir = DirectoryInfo.getRootAsDirectoryInfo(value, dirInfo.get());
+    into.clear()
+        .setObjectId(dir.objectId())
+        .setParentId(dir.parentId())
+        .setUpdateId(dir.updateId())
+        .setCreationTime(dir.creationTime())
+        .setModificationTime(dir.modificationTime())
+        .setName(dir.name())
+        .setOwner(dir.owner())
+        .setGroup(dir.group())
+        .setPermission(dir.permissions());
+    Acl a = acl.get();
+    for (int i=0; i<dir.aclsLength(); i++) {
+      dir.acls(a, i);
+      into.addAcl(a.name(), a.type(), a.scope(), a.permissions());
+    }
+  }
+
+}
@@ -0,0 +1,23 @@
+package com.sodonnell.rocksdb.codec;
+
+import com.sodonnell.rocksdb.ByteUtils;
+
+// Take the output of another codec, and write the object ID as the first
+// 8 bytes. This means we have the same data length as the other codec,
+// but we will not use it - its all just padding except the first 8 bytes.
+public class IdPrefixedCodec extends LongCodec {
+
+  private final ValueCodec delegate;
+
+  public IdPrefixedCodec(ValueCodec delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public byte[] encode(DirectoryRecord record) {
+    byte[] bytes = delegate.encode(record);
+    ByteUtils.longToBytes(record.getObjectId(), bytes, 0);
+    return bytes;
+  }
+
+}
@@ -0,0 +1,30 @@
+package com.sodonnell.rocksdb.codec;
+
+import com.sodonnell.rocksdb.ByteUtils;
+
+import java.nio.ByteBuffer;
+
+// Stores only the object ID as an 8 byte long.
+public class LongCodec implements ValueCodec {
+
+  @Override
+  public byte[] encode(DirectoryRecord record) {
+    return ByteUtils.longToBytes(record.getObjectId());
+  }
+
+  @Override
+  public long decodeNextId(byte[] value) {
+    return ByteUtils.bytesToLong(value, 0);
+  }
+
+  @Override
+  public long decodeNextId(ByteBuffer value) {
+    return ByteUtils.bytesToLong(value, value.position());
+  }
+
+  @Override
+  public void decode(byte[] value, DirectoryRecord into) {
+    into.clear().setObjectId(decodeNextId(value));
+  }
+
+}
@@ -0,0 +1,20 @@
+package com.sodonnell.rocksdb.codec;
+
+import com.sodonnell.rocksdb.ByteUtils;
+
+// The object ID as an 8 byte long, followed by random bytes to make the value
+// larger.
+public class PaddedLongCodec extends LongCodec {
+
+  private final int paddingLength;
+
+  public PaddedLongCodec(int paddingLength) {
+    this.paddingLength = paddingLength;
+  }
+
+  @Override
+  public byte[] encode(DirectoryRecord record) {
+    return ByteUtils.longToBytesWithPadding(record.getObjectId(), paddingLength);
+  }
+
+}
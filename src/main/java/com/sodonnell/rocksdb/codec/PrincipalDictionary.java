@@ -0,0 +1,102 @@
+package com.sodonnell.rocksdb.codec;
+
+import com.sodonnell.rocksdb.ByteUtils;
+import com.sodonnell.rocksdb.RocksDBTable;
+import org.rocksdb.RocksDBException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Maps the user and group names in directory entries to small integer IDs, so
+// values can store the ID rather than repeating the name. A few principals
+// usually cover most of the namespace. The dictionary is saved in the meta key
+// range of the table and loaded when the table is opened.
+//
+// Lookups in either direction do not lock. New names are assigned the next ID
+// under a lock, so the dictionary can be shared by generator threads.
+public class PrincipalDictionary {
+
+  public static final String META_NAME = "principals";
+
+  private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+  private volatile String[] names = new String[0];
+
+  // Returns the ID for the name, assigning a new one if it is not known.
+  public int idFor(String name) {
+    Integer id = ids.get(name);
+    if (id != null) {
+      return id;
+    }
+    return assign(name);
+  }
+
+  public String nameFor(int id) {
+    String[] current = names;
+    if (id < 0 || id >= current.length) {
+      throw new IllegalStateException("Unknown principal ID " + id + ", the dictionary has "
+          + current.length + " entries");
+    }
+    return current[id];
+  }
+
+  public int size() {
+    return names.length;
+  }
+
+  public synchronized void load(RocksDBTable table) throws RocksDBException {
+    byte[] stored = table.getMeta(META_NAME);
+    if (stored == null) {
+      return;
+    }
+    int pos = 0;
+    int count = ByteUtils.readVarInt(stored, pos);
+    pos += ByteUtils.varIntSize(count);
+    String[] loaded = new String[count];
+    for (int i=0; i<count; i++) {
+      int length = ByteUtils.readVarInt(stored, pos);
+      pos += ByteUtils.varIntSize(length);
+      loaded[i] = new String(stored, pos, length, StandardCharsets.UTF_8);
+      pos += length;
+    }
+    ids.clear();
+    for (int i=0; i<loaded.length; i++) {
+      ids.put(loaded[i], i);
+    }
+    names = loaded;
+  }
+
+  // Stored as a varint count, then each name as a varint length and UTF-8.
+  public synchronized void save(RocksDBTable table) throws RocksDBException {
+    String[] current = names;
+    byte[][] encoded = new byte[current.length][];
+    int size = ByteUtils.varIntSize(current.length);
+    for (int i=0; i<current.length; i++) {
+      encoded[i] = current[i].getBytes(StandardCharsets.UTF_8);
+      size += ByteUtils.varIntSize(encoded[i].length) + encoded[i].length;
+    }
+    byte[] bytes = new byte[size];
+    int pos = ByteUtils.writeVarInt(current.length, bytes, 0);
+    for (byte[] name : encoded) {
+      pos += ByteUtils.writeVarInt(name.length, bytes, pos);
+      System.arraycopy(name, 0, bytes, pos, name.length);
+      pos += name.length;
+    }
+    table.putMeta(META_NAME, bytes);
+  }
+
+  private synchronized int assign(String name) {
+    Integer id = ids.get(name);
+    if (id != null) {
+      return id;
+    }
+    String[] grown = Arrays.copyOf(names, names.length + 1);
+    grown[names.length] = name;
+    // Publish the name before the ID, so a reader given the ID can find it
+    names = grown;
+    ids.put(name, names.length - 1);
+    return names.length - 1;
+  }
+
+}
@@ -0,0 +1,66 @@
+package com.sodonnell.rocksdb.codec;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.sodonnell.rocksdb.proto.DirectoryInfoProtos;
+
+public class ProtoCodec implements ValueCodec {
+
+  @Override
+  public byte[] encode(DirectoryRecord record) {
+    DirectoryInfoProtos.DirectoryInfo.Builder builder = DirectoryInfoProtos.DirectoryInfo.newBuilder();
+    builder.setCreationTime(record.getCreationTime());
+    builder.setModificationTime(record.getModificationTime());
+    builder.setUpdateId(record.getUpdateId());
+    builder.setObjectId(record.getObjectId());
+    builder.setParentId(record.getParentId());
+    builder.setName(record.getName());
+    builder.setOwner(record.getOwner());
+    builder.setGroup(record.getGroup());
+    builder.setPermission(record.getPermission());
+
+    for (int i=0; i<record.getAclCount(); i++) {
+      builder.addAcls(
+          DirectoryInfoProtos.Acl.newBuilder()
+              .setName(record.getAclName(i))
+              .setType(DirectoryInfoProtos.AclType.valueOf(record.getAclType(i)))
+              .setScope(DirectoryInfoProtos.AclScope.valueOf(record.getAclScope(i)))
+              .setPermissions(record.getAclPermissions(i)).build()
+      );
+    }
+    return builder.build().toByteArray();
+  }
+
+  @Override
+  public long decodeNextId(byte[] value) {
+    return parse(value).getObjectId();
+  }
+
+  @Override
+  public void decode(byte[] value, DirectoryRecord into) {
+    DirectoryInfoProtos.DirectoryInfo dir = parse(value);
+    into.clear()
+        .setObjectId(dir.getObjectId())
+        .setParentId(dir.getParentId())
+        .setUpdateId(dir.getUpdateId())
+        .setCreationTime(dir.getCreationTime())
+        .setModificationTime(dir.getModificationTime())
+        .setName(dir.getName())
+        .setOwner(dir.getOwner())
+        .setGroup(dir.getGroup())
+        .setPermission((short)dir.getPermission());
+    for (DirectoryInfoProtos.Acl a : dir.getAclsList()) {
+      into.addAcl(a.getName(), (byte)a.getType().getNumber(),
+          (byte)a.getScope().getNumber(), (short)a.getPermissions());
+    }
+  }
+
+  private static DirectoryInfoProtos.DirectoryInfo parse(byte[] value) {
+    try {
+      return DirectoryInfoProtos.DirectoryInfo.parseFrom(value);
+    } catch (InvalidProtocolBufferException e) {
+      System.out.println("Exception parsing proto " + e);
+      throw new RuntimeException(e);
+    }
+  }
+
+}
@@ -0,0 +1,48 @@
+package com.sodonnell.rocksdb.codec;
+
+import com.sodonnell.rocksdb.RocksDBTable;
+import org.rocksdb.RocksDBException;
+
+import java.nio.ByteBuffer;
+
+// Converts a directory entry to and from the bytes stored as the RocksDB value.
+// Codecs are created through ValueCodecs by name, and one instance may be
+// used by many threads at once, so implementations must be thread safe.
+public interface ValueCodec {
+
+  // Called when the table the codec reads and writes is opened. Codecs which
+  // keep state in the table, such as a dictionary, load it here.
+  default void open(RocksDBTable table) throws RocksDBException {
+  }
+
+  // Called after the last value has been written to the table, to save any
+  // state the values depend on.
+  default void close(RocksDBTable table) throws RocksDBException {
+  }
+
+  byte[] encode(DirectoryRecord record);
+
+  // Returns the object ID of the encoded entry, which is the parent ID of its
+  // children. This is the only field a directory walk needs.
+  long decodeNextId(byte[] value);
+
+  // Decodes the value between the buffer position and limit, without
+  // changing the position. The default copies the value out of the buffer.
+  default long decodeNextId(ByteBuffer value) {
+    return decodeNextId(copy(value));
+  }
+
+  // Decodes every field of the value into the record.
+  void decode(byte[] value, DirectoryRecord into);
+
+  default void decode(ByteBuffer value, DirectoryRecord into) {
+    decode(copy(value), into);
+  }
+
+  static byte[] copy(ByteBuffer value) {
+    byte[] bytes = new byte[value.remaining()];
+    value.duplicate().get(bytes);
+    return bytes;
+  }
+
+}
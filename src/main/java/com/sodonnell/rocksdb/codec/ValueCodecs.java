@@ -0,0 +1,54 @@
+package com.sodonnell.rocksdb.codec;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// Registry of the value codecs by name. The name of a codec is also the name of
+// the table generated with it. To benchmark a new format, implement ValueCodec
+// and register it here - the generator, query tool and benchmarks look codecs
+// up by name.
+public final class ValueCodecs {
+
+  private static final Map<String, Supplier<ValueCodec>> CODECS = new LinkedHashMap<>();
+
+  static {
+    register("LONG", LongCodec::new);
+    register("FLAT_BUFFER", FlatBufferCodec::new);
+    register("FLAT_BUFFER_LONG", () -> new IdPrefixedCodec(new FlatBufferCodec()));
+    register("PROTO", ProtoCodec::new);
+    register("PROTO_LONG", () -> new IdPrefixedCodec(new ProtoCodec()));
+    register("BINARY", BinaryCodec::new);
+    register("BINARY_DICT", DictionaryBinaryCodec::new);
+    // Padding is 8 bytes shorter than the name, to leave room for the ID
+    register("PADDING_50", () -> new PaddedLongCodec(42));
+    register("PADDING_100", () -> new PaddedLongCodec(92));
+    register("PADDING_150", () -> new PaddedLongCodec(142));
+    register("PADDING_200", () -> new PaddedLongCodec(192));
+    register("PADDING_250", () -> new PaddedLongCodec(242));
+  }
+
+  private ValueCodecs() {
+  }
+
+  public static synchronized void register(String name, Supplier<ValueCodec> factory) {
+    CODECS.put(name, factory);
+  }
+
+  // Returns a new instance of the named codec. Each table needs its own
+  // instance, as a codec may hold state loaded from the table.
+  public static synchronized ValueCodec create(String name) {
+    Supplier<ValueCodec> factory = CODECS.get(name);
+    if (factory == null) {
+      throw new IllegalArgumentException("Unknown value codec " + name + ", expected one of " + CODECS.keySet());
+    }
+    return factory.get();
+  }
+
+  public static synchronized List<String> names() {
+    return new ArrayList<>(CODECS.keySet());
+  }
+
+}
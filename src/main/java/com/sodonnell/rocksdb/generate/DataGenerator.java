@@ -1,23 +1,18 @@
 package com.sodonnell.rocksdb.generate;
 
-public class DataGenerator {
+import com.sodonnell.rocksdb.codec.ValueCodecs;
 
-  public enum DB_TYPE {
-    LONG,
-    FLAT_BUFFER,
-    FLAT_BUFFER_LONG,
-    PROTO,
-    PROTO_LONG,
-    PADDING_50,
-    PADDING_100,
-    PADDING_150,
-    PADDING_200,
-    PADDING_250
-  }
+import java.util.ArrayList;
+import java.util.List;
+
+public class DataGenerator {
 
   private int dirsPerLevel;
   private int levels;
   private String basePath;
+  private boolean bulkLoad = false;
+  private int threads = 1;
+  private int splitDepth = 0;
 
   public DataGenerator(String basePath, int dirsPerLevel, int levels) {
     this.basePath = basePath;
@@ -25,58 +20,79 @@ public class DataGenerator {
     this.levels = levels;
   }
 
-  public void generateForType(DB_TYPE type) throws Exception {
-    System.out.println("Generating data for "+type);
+  // Generate the tables by writing sorted SST files and ingesting them,
+  // rather than writing batches through the memtable.
+  public void setBulkLoad(boolean bulkLoad) {
+    this.bulkLoad = bulkLoad;
+  }
+
+  // Generate the tables with a pool of threads, each writing a subtree. A
+  // splitDepth of 0 picks a depth giving a few subtrees per thread.
+  public void setThreads(int threads, int splitDepth) {
+    this.threads = threads;
+    this.splitDepth = splitDepth;
+  }
+
+  public void generateForType(String type) throws Exception {
+    System.out.println("Generating data for "+type+(bulkLoad ? " using bulk load" : ""));
+    long start = System.currentTimeMillis();
     GenerateData gen = getGenerator(type);
-    gen.generate();
+    if (bulkLoad) {
+      gen.generateBulk();
+    } else if (threads > 1) {
+      gen.generateParallel(threads, splitDepth > 0 ? splitDepth : gen.defaultSplitDepth(threads));
+    } else {
+      gen.generate();
+    }
+    long elapsed = System.currentTimeMillis() - start;
+    long entries = gen.subtreeSize(0) - 1;
+    System.out.println("Generated "+type+" in "+elapsed+" ms, "+(entries * 1000 / Math.max(elapsed, 1))+" entries/s");
   }
 
   public void generateAll() throws Exception {
-    for (DB_TYPE t : DB_TYPE.values()) {
+    for (String t : ValueCodecs.names()) {
       generateForType(t);
     }
   }
 
-  public GenerateData getGenerator(DB_TYPE type) throws Exception {
-    if (type.equals(DB_TYPE.LONG)) {
-      return new GenerateData(basePath, type.toString(), dirsPerLevel, levels);
-    } else if (type.equals(DB_TYPE.FLAT_BUFFER)) {
-      return new GenerateDataWithFlatBuffer(basePath, type.toString(), dirsPerLevel, levels);
-    } else if (type.equals(DB_TYPE.FLAT_BUFFER_LONG)) {
-      return new GenerateDataFlatBufferLong(basePath, type.toString(), dirsPerLevel, levels);
-    } else if (type.equals(DB_TYPE.PROTO)) {
-      return new GenerateDataWithProto(basePath, type.toString(), dirsPerLevel, levels);
-    } else if (type.equals(DB_TYPE.PROTO_LONG)) {
-      return new GenerateDataWithProtoLong(basePath, type.toString(), dirsPerLevel, levels);
-    } else if (type.equals(DB_TYPE.PADDING_50)) {
-      return new GenerateDataWithPadding(basePath, type.toString(), dirsPerLevel, levels, 42);
-    } else if (type.equals(DB_TYPE.PADDING_100)) {
-      return new GenerateDataWithPadding(basePath, type.toString(), dirsPerLevel, levels, 92);
-    } else if (type.equals(DB_TYPE.PADDING_150)) {
-      return new GenerateDataWithPadding(basePath, type.toString(), dirsPerLevel, levels, 142);
-    } else if (type.equals(DB_TYPE.PADDING_200)) {
-      return new GenerateDataWithPadding(basePath, type.toString(), dirsPerLevel, levels, 192);
-    } else if (type.equals(DB_TYPE.PADDING_250)) {
-      return new GenerateDataWithPadding(basePath, type.toString(), dirsPerLevel, levels, 242);
-    } else {
-      throw new Exception("unknown db type");
-    }
+  // The table name is the name of the codec used for its values.
+  public GenerateData getGenerator(String type) {
+    return new GenerateData(basePath, type, dirsPerLevel, levels, ValueCodecs.create(type));
   }
 
   public static void main(String[] args) {
+    boolean bulk = false;
+    int threads = 1;
+    int splitDepth = 0;
+    List<String> positional = new ArrayList<>();
+    for (int i=0; i<args.length; i++) {
+      if (args[i].equals("--bulk")) {
+        bulk = true;
+      } else if (args[i].equals("--threads")) {
+        threads = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("--split-depth")) {
+        splitDepth = Integer.parseInt(args[++i]);
+      } else {
+        positional.add(args[i]);
+      }
+    }
+    args = positional.toArray(new String[0]);
     if (args.length < 3) {
-      System.out.println("Usage: DataGenerator /path/of/rocks/dbs dirs_per_level levels <DB_TYPE>");
+      System.out.println("Usage: DataGenerator /path/of/rocks/dbs dirs_per_level levels <TABLE> "
+          + "[--bulk] [--threads N] [--split-depth D]");
     }
     String base = args[0];
     int dirsPerLevel = Integer.parseInt(args[1]);
     int levels = Integer.parseInt(args[2]);
 
-    DB_TYPE generateOnly = null;
+    String generateOnly = null;
     if (args.length >= 4) {
-      generateOnly = DataGenerator.DB_TYPE.valueOf(args[3]);
+      generateOnly = args[3];
     }
 
     DataGenerator d = new DataGenerator(base, dirsPerLevel, levels);
+    d.setBulkLoad(bulk);
+    d.setThreads(threads, splitDepth);
     try {
       if (generateOnly != null) {
         d.generateForType(generateOnly);
@@ -0,0 +1,150 @@
+package com.sodonnell.rocksdb.generate;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// The number of children given to each directory by SkewedGenerateData. A
+// distribution is written as a spec string:
+//
+//   fixed:N             always N
+//   uniform:MIN-MAX     evenly spread from MIN to MAX inclusive
+//   zipf:MAX:S          1 to MAX, with P(k) proportional to 1/k^S
+//   power:MIN:ALPHA:MAX Pareto with the given minimum and shape, capped at MAX
+//
+// Zipf and power law give most directories a few children and a few
+// directories a very large number.
+public abstract class FanoutDistribution {
+
+  public abstract int next(Random random);
+
+  public static FanoutDistribution parse(String spec) {
+    String[] parts = spec.split(":");
+    try {
+      switch (parts[0]) {
+      case "fixed":
+        return new Fixed(Integer.parseInt(parts[1]));
+      case "uniform":
+        String[] range = parts[1].split("-");
+        return new Uniform(Integer.parseInt(range[0]), Integer.parseInt(range[1]));
+      case "zipf":
+        return new Zipf(Integer.parseInt(parts[1]), Double.parseDouble(parts[2]));
+      case "power":
+        return new PowerLaw(Integer.parseInt(parts[1]), Double.parseDouble(parts[2]),
+            Integer.parseInt(parts[3]));
+      default:
+        break;
+      }
+    } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid fan-out distribution " + spec, e);
+    }
+    throw new IllegalArgumentException("Unknown fan-out distribution " + spec
+        + ", expected fixed, uniform, zipf or power");
+  }
+
+  // Parses a comma separated list of specs, one per level. Levels past the
+  // end of the list use the last spec.
+  public static FanoutDistribution[] parseLevels(String specs) {
+    String[] parts = specs.split(",");
+    FanoutDistribution[] levels = new FanoutDistribution[parts.length];
+    for (int i=0; i<parts.length; i++) {
+      levels[i] = parse(parts[i].trim());
+    }
+    return levels;
+  }
+
+  public static class Fixed extends FanoutDistribution {
+    private final int count;
+
+    public Fixed(int count) {
+      this.count = count;
+    }
+
+    @Override
+    public int next(Random random) {
+      return count;
+    }
+
+    @Override
+    public String toString() {
+      return "fixed:" + count;
+    }
+  }
+
+  public static class Uniform extends FanoutDistribution {
+    private final int min;
+    private final int max;
+
+    public Uniform(int min, int max) {
+      this.min = min;
+      this.max = max;
+    }
+
+    @Override
+    public int next(Random random) {
+      return min + random.nextInt(max - min + 1);
+    }
+
+    @Override
+    public String toString() {
+      return "uniform:" + min + "-" + max;
+    }
+  }
+
+  public static class Zipf extends FanoutDistribution {
+    private final int max;
+    private final double skew;
+    // cdf[k-1] is P(X <= k)
+    private final double[] cdf;
+
+    public Zipf(int max, double skew) {
+      this.max = max;
+      this.skew = skew;
+      cdf = new double[max];
+      double total = 0;
+      for (int k=1; k<=max; k++) {
+        total += 1 / Math.pow(k, skew);
+        cdf[k - 1] = total;
+      }
+      for (int i=0; i<max; i++) {
+        cdf[i] /= total;
+      }
+    }
+
+    @Override
+    public int next(Random random) {
+      int i = Arrays.binarySearch(cdf, random.nextDouble());
+      // Rounding can leave the last entry just under 1
+      return Math.min((i >= 0 ? i : -i - 1) + 1, max);
+    }
+
+    @Override
+    public String toString() {
+      return "zipf:" + max + ":" + skew;
+    }
+  }
+
+  public static class PowerLaw extends FanoutDistribution {
+    private final int min;
+    private final double alpha;
+    private final int max;
+
+    public PowerLaw(int min, double alpha, int max) {
+      this.min = min;
+      this.alpha = alpha;
+      this.max = max;
+    }
+
+    @Override
+    public int next(Random random) {
+      // Inverse of the Pareto CDF. 1 - nextDouble() is never zero.
+      double x = min / Math.pow(1 - random.nextDouble(), 1 / alpha);
+      return (int)Math.min(x, max);
+    }
+
+    @Override
+    public String toString() {
+      return "power:" + min + ":" + alpha + ":" + max;
+    }
+  }
+
+}
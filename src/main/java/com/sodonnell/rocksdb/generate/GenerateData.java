@@ -1,21 +1,66 @@
 package com.sodonnell.rocksdb.generate;
 
 import com.sodonnell.rocksdb.ByteUtils;
+import com.sodonnell.rocksdb.KeyEncoding;
 import com.sodonnell.rocksdb.RocksDBTable;
+import com.sodonnell.rocksdb.TableConfig;
+import com.sodonnell.rocksdb.codec.DirectoryRecord;
+import com.sodonnell.rocksdb.codec.ValueCodec;
+import org.rocksdb.EnvOptions;
 import org.rocksdb.RocksDBException;
+import org.rocksdb.SstFileWriter;
+import org.rocksdb.Statistics;
+import org.rocksdb.TickerType;
 import org.rocksdb.WriteBatch;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 public class GenerateData {
 
+  // Size at which the bulk loader starts a new SST file
+  public static long SST_FILE_BYTES = 256L * 1024 * 1024;
+
   private long counter = 0;
   public static String dirPrefix = "/abcdefghifklmno";
+  public static String filePrefix = "/pqrstuvwxyz.dat";
   protected WriteBatch rocksBatch;
   protected RocksDBTable rocksTable;
+  protected KeyEncoding keyEncoding;
+  protected ValueCodec codec;
+  protected String tablePath;
   protected int dirsPerLevel;
   protected int levels;
+  // Bytes of keys and values handed to RocksDB, used to work out the write
+  // amplification.
+  private long userBytes = 0;
+
+  private File sstDir;
+  private SstFileWriter sstWriter;
+  private boolean sstFileOpen = false;
+  private List<String> sstFiles;
+  private long sstBytes = 0;
 
-  public GenerateData(String basePath, String tableName, int dirsPerLevel, int levels) {
-    this.rocksTable = new RocksDBTable(basePath+"/"+tableName, 8);
+  public GenerateData(String basePath, String tableName, int dirsPerLevel, int levels, ValueCodec codec) {
+    TableConfig config = TableConfig.fromSystemProperties(8);
+    this.tablePath = basePath+"/"+config.tableDirName(tableName);
+    this.rocksTable = new RocksDBTable(tablePath, config);
+    this.keyEncoding = config.getKeyEncoding();
+    this.codec = codec;
+    try {
+      codec.open(rocksTable);
+    } catch (RocksDBException e) {
+      throw new RuntimeException(e);
+    }
     rocksBatch = new WriteBatch();
     this.dirsPerLevel = dirsPerLevel;
     this.levels = levels;
@@ -23,37 +68,296 @@ public class GenerateData {
 
   public void generate()
       throws RocksDBException {
-    gen(0, this.dirsPerLevel, this.levels, 1);
-    commitBatch(true);
+    SubtreeWriter writer = new SubtreeWriter(0, rocksBatch);
+    writer.gen(0, 1);
+    writer.finish();
+    counter = writer.counter;
+    codec.close(rocksTable);
+    rocksTable.recordKeyEncoding();
+    rocksTable.flush();
+    System.out.println("Final counter value is "+ counter);
+    printWriteAmp(diskBytesWritten());
+  }
+
+  // Generates the same tree as generate() using a pool of threads. The
+  // directories down to splitDepth are written by the calling thread, and the
+  // subtree under each directory at splitDepth is a separate task. Each task
+  // has its own WriteBatch, and starts allocating IDs from the ID of its root
+  // directory, which is calculated from the size of the subtrees before it,
+  // so every key and ID is the same as generate() produces.
+  public void generateParallel(int threads, int splitDepth)
+      throws RocksDBException, InterruptedException, ExecutionException {
     rocksBatch.close();
+    List<long[]> tasks = new ArrayList<>();
+    SubtreeWriter top = new SubtreeWriter(0, new WriteBatch());
+    splitTree(0, 1, splitDepth, top, tasks);
+    top.finish();
+    System.out.println("Generating "+ tasks.size() + " subtrees with " + threads + " threads");
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (long[] task : tasks) {
+        futures.add(executor.submit(() -> {
+          SubtreeWriter writer = new SubtreeWriter(task[0], new WriteBatch());
+          writer.gen(task[0], (int)task[1]);
+          writer.finish();
+          return null;
+        }));
+      }
+      for (Future<?> f : futures) {
+        f.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    counter = subtreeSize(0) - 1;
+    codec.close(rocksTable);
+    rocksTable.recordKeyEncoding();
+    rocksTable.flush();
     System.out.println("Final counter value is "+ counter);
+    printWriteAmp(diskBytesWritten());
   }
 
-  // Override this in sub-classes to generate a different value
-  public byte[] generateValue(long inodeID) {
-    return ByteUtils.longToBytes(inodeID);
+  // Picks a split depth giving at least 4 subtrees per thread, so the threads
+  // stay busy as the tasks finish.
+  public int defaultSplitDepth(int threads) {
+    int depth = 1;
+    long subtrees = dirsPerLevel;
+    while (subtrees < threads * 4L && depth < levels - 1) {
+      subtrees *= dirsPerLevel;
+      depth++;
+    }
+    return depth;
   }
 
-  private void gen(long myId, int perLevel, int levels, int currentLevel)
-      throws RocksDBException {
+  // Generates the same tree as generate(), but produces the keys in sorted
+  // order and writes them straight into SST files, which are then ingested.
+  // This avoids the WAL, memtable and compaction, and leaves the table fully
+  // compacted.
+  //
+  // Keys are sorted by parent ID and then name. IDs are allocated depth first,
+  // so visiting the directories depth first and writing all the children of
+  // each directory before moving on gives the keys in order. The ID of each
+  // child is calculated from the size of the subtrees before it, so the IDs
+  // match the ones generate() allocates.
+  public void generateBulk() throws RocksDBException, IOException {
+    sstDir = new File(tablePath + "_sst");
+    Files.createDirectories(sstDir.toPath());
+    sstFiles = new ArrayList<>();
+    try (EnvOptions envOptions = new EnvOptions()) {
+      sstWriter = new SstFileWriter(envOptions, rocksTable.getOptions());
+      Integer[] sortedChildren = sortedChildIndexes(dirsPerLevel, keyEncoding);
+      genSorted(0, 1, sortedChildren, new DirectoryRecord());
+      finishSstFile();
+      sstWriter.close();
+    }
+    System.out.println("Ingesting "+ sstFiles.size() + " SST files");
+    rocksTable.ingest(sstFiles);
+    codec.close(rocksTable);
+    rocksTable.recordKeyEncoding();
+    rocksTable.flush();
+    Files.deleteIfExists(sstDir.toPath());
+    System.out.println("Final counter value is "+ counter);
+    printWriteAmp(sstBytes);
+  }
+
+  // Fills the record with the entry for a directory and encodes it with the
+  // table's codec. The record is reused for each value.
+  public byte[] generateValue(DirectoryRecord record, long parentID, long inodeID) {
+    return codec.encode(fillRecord(record, parentID, inodeID));
+  }
+
+  protected DirectoryRecord fillRecord(DirectoryRecord record, long parentID, long inodeID) {
+    long now = System.currentTimeMillis();
+    return record.clear()
+        .setObjectId(inodeID)
+        .setParentId(parentID)
+        .setUpdateId(now)
+        .setCreationTime(now)
+        .setModificationTime(now)
+        .setName(dirPrefix)
+        .setOwner("sodonnell")
+        .setGroup("hadoop-read-write")
+        .setPermission((short)755)
+        .addAcl("otheruser", DirectoryRecord.ACL_USER, DirectoryRecord.SCOPE_DEFAULT, (short)7)
+        .addAcl("otheruser", DirectoryRecord.ACL_USER, DirectoryRecord.SCOPE_ACCESS, (short)7);
+  }
+
+  public static String fileName(int index) {
+    return filePrefix + index;
+  }
+
+  public void close() {
+    rocksBatch.close();
+    rocksTable.close();
+  }
+
+  public static String dirName(int index) {
+    // TODO - Should be %2 in format for length 01, 02 etc.
+    return String.format(dirPrefix+"%01d", index);
+  }
+
+  // Number of entries in the subtree rooted at a directory on the given
+  // level, including the directory itself.
+  protected long subtreeSize(int level) {
+    return subtreeSize(dirsPerLevel, levels, level);
+  }
+
+  public static long subtreeSize(int dirsPerLevel, int levels, int level) {
+    long size = 0;
+    long levelCount = 1;
+    for (int i = level; i <= levels; i++) {
+      size += levelCount;
+      levelCount *= dirsPerLevel;
+    }
+    return size;
+  }
+
+  // The ID generated for the directory reached by following the child
+  // indexes in path from the root. IDs are allocated depth first, so it is
+  // found from the sizes of the subtrees before each directory on the path.
+  public static long directoryId(int dirsPerLevel, int levels, int[] path) {
+    long id = 0;
+    for (int i = 0; i < path.length; i++) {
+      id += 1 + path[i] * subtreeSize(dirsPerLevel, levels, i + 1);
+    }
+    return id;
+  }
+
+  // Writes the directories from currentLevel down to splitDepth, and records
+  // the ID and level of each directory at splitDepth as a task.
+  private void splitTree(long myId, int currentLevel, int splitDepth,
+      SubtreeWriter writer, List<long[]> tasks) throws RocksDBException {
     if (currentLevel > levels) {
       return;
     }
-    for (int j=0; j<perLevel; j++) {
-      long nextId = ++counter;
-      // TODO - Should be %2 in format for length 01, 02 etc.
-      String dirName = String.format(dirPrefix+"%01d", j);
-      rocksBatch.put(ByteUtils.dirBytes(myId, dirName), generateValue(counter));
-      commitBatch(false);
-      gen(nextId, perLevel, levels,currentLevel+1);
+    if (currentLevel > splitDepth) {
+      tasks.add(new long[] {myId, currentLevel});
+      return;
+    }
+    long childSize = subtreeSize(currentLevel);
+    for (int j=0; j<dirsPerLevel; j++) {
+      long childId = myId + 1 + j * childSize;
+      writer.put(myId, j, childId);
+      splitTree(childId, currentLevel + 1, splitDepth, writer, tasks);
+    }
+  }
+
+  private void genSorted(long myId, int currentLevel, Integer[] sortedChildren,
+      DirectoryRecord record) throws RocksDBException {
+    if (currentLevel > levels) {
+      return;
+    }
+    long childSize = subtreeSize(currentLevel);
+    for (int j : sortedChildren) {
+      long childId = myId + 1 + j * childSize;
+      byte[] key = ByteUtils.dirBytes(myId, dirName(j), keyEncoding);
+      byte[] value = generateValue(record, myId, childId);
+      userBytes += key.length + value.length;
+      if (sstFileOpen && sstWriter.fileSize() >= SST_FILE_BYTES) {
+        finishSstFile();
+      }
+      if (!sstFileOpen) {
+        startSstFile();
+      }
+      sstWriter.put(key, value);
+      counter++;
+    }
+    for (int j=0; j<dirsPerLevel; j++) {
+      genSorted(myId + 1 + j * childSize, currentLevel + 1, sortedChildren, record);
+    }
+  }
+
+  private void startSstFile() throws RocksDBException {
+    String file = new File(sstDir, String.format("%06d.sst", sstFiles.size())).getAbsolutePath();
+    sstWriter.open(file);
+    sstFiles.add(file);
+    sstFileOpen = true;
+  }
+
+  private void finishSstFile() throws RocksDBException {
+    if (!sstFileOpen) {
+      return;
+    }
+    sstWriter.finish();
+    sstFileOpen = false;
+    long size = new File(sstFiles.get(sstFiles.size() - 1)).length();
+    sstBytes += size;
+    System.out.println("Wrote SST file "+ sstFiles.get(sstFiles.size() - 1) + " of size " + size);
+  }
+
+  // The child indexes in the order the RocksDB comparator sorts their keys,
+  // eg 0, 1, 10, 11, 2 when there are more than 10 children.
+  private static Integer[] sortedChildIndexes(int count, KeyEncoding encoding) {
+    Integer[] indexes = new Integer[count];
+    for (int i=0; i<count; i++) {
+      indexes[i] = i;
     }
+    Arrays.sort(indexes, Comparator.comparing(i -> encoding.encodeName(dirName(i)), ByteUtils::compare));
+    return indexes;
+  }
+
+  protected void printWriteAmp(long diskBytes) {
+    System.out.println("User bytes written "+ userBytes + ", disk bytes written " + diskBytes
+        + ", write amplification " + String.format("%.2f", (double)diskBytes / userBytes));
+  }
+
+  protected long diskBytesWritten() {
+    Statistics stats = rocksTable.getStatistics();
+    return stats.getTickerCount(TickerType.WAL_FILE_BYTES)
+        + stats.getTickerCount(TickerType.FLUSH_WRITE_BYTES)
+        + stats.getTickerCount(TickerType.COMPACT_WRITE_BYTES);
   }
 
-  private void commitBatch(boolean force) {
-    if (force || rocksBatch.getDataSize() > 1024*1024*10) {
-      System.out.println("Batch size is "+ rocksBatch.getDataSize() + " Writing it out");
-      rocksTable.putBatch(rocksBatch);
-      rocksBatch.clear();
+  protected synchronized void addUserBytes(long bytes) {
+    userBytes += bytes;
+  }
+
+  // Writes a subtree depth first, allocating IDs from its own counter and
+  // writing to RocksDB through its own batch.
+  private class SubtreeWriter {
+    private long counter;
+    private final WriteBatch batch;
+    private final DirectoryRecord record = new DirectoryRecord();
+    private long bytes = 0;
+
+    SubtreeWriter(long startId, WriteBatch batch) {
+      this.counter = startId;
+      this.batch = batch;
+    }
+
+    void gen(long myId, int currentLevel) throws RocksDBException {
+      if (currentLevel > levels) {
+        return;
+      }
+      for (int j=0; j<dirsPerLevel; j++) {
+        long nextId = ++counter;
+        put(myId, j, nextId);
+        gen(nextId, currentLevel+1);
+      }
+    }
+
+    void put(long parentId, int index, long id) throws RocksDBException {
+      byte[] key = ByteUtils.dirBytes(parentId, dirName(index), keyEncoding);
+      byte[] value = generateValue(record, parentId, id);
+      bytes += key.length + value.length;
+      batch.put(key, value);
+      commitBatch(false);
+    }
+
+    void finish() {
+      commitBatch(true);
+      batch.close();
+      addUserBytes(bytes);
+    }
+
+    private void commitBatch(boolean force) {
+      if (force || batch.getDataSize() > 1024*1024*10) {
+        System.out.println("Batch size is "+ batch.getDataSize() + " Writing it out");
+        rocksTable.putBatch(batch);
+        batch.clear();
+      }
     }
   }
 }
@@ -0,0 +1,93 @@
+package com.sodonnell.rocksdb.generate;
+
+import com.sodonnell.rocksdb.ByteUtils;
+import com.sodonnell.rocksdb.RocksDBTable;
+import org.rocksdb.RocksDBException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Directories picked out of a generated namespace, so benchmarks can target a
+// region of it. Each sample is the directory ID, for listing it, and the path
+// of child indexes from the root, for walking to it. The samples are saved in
+// the meta key range of the table under "samples.<region>".
+public class PathSamples {
+
+  public static final String HOT = "hot";
+  public static final String COLD = "cold";
+
+  private final List<Long> ids = new ArrayList<>();
+  private final List<int[]> paths = new ArrayList<>();
+
+  public void add(long id, int[] path) {
+    ids.add(id);
+    paths.add(path);
+  }
+
+  public int size() {
+    return ids.size();
+  }
+
+  public long getId(int i) {
+    return ids.get(i);
+  }
+
+  public int[] getPath(int i) {
+    return paths.get(i);
+  }
+
+  public static String metaName(String region) {
+    return "samples." + region;
+  }
+
+  // Stored as a varint count, then for each sample the 8 byte ID, a varint
+  // path length and the varint child indexes.
+  public void save(RocksDBTable table, String region) throws RocksDBException {
+    int size = ByteUtils.varIntSize(ids.size());
+    for (int[] path : paths) {
+      size += Long.BYTES + ByteUtils.varIntSize(path.length);
+      for (int index : path) {
+        size += ByteUtils.varIntSize(index);
+      }
+    }
+    byte[] bytes = new byte[size];
+    int pos = ByteUtils.writeVarInt(ids.size(), bytes, 0);
+    for (int i=0; i<ids.size(); i++) {
+      ByteUtils.longToBytes(ids.get(i), bytes, pos);
+      pos += Long.BYTES;
+      int[] path = paths.get(i);
+      pos += ByteUtils.writeVarInt(path.length, bytes, pos);
+      for (int index : path) {
+        pos += ByteUtils.writeVarInt(index, bytes, pos);
+      }
+    }
+    table.putMeta(metaName(region), bytes);
+  }
+
+  // Throws IllegalStateException if the table has no samples for the region,
+  // as it was not built by SkewedGenerateData.
+  public static PathSamples load(RocksDBTable table, String region) throws RocksDBException {
+    byte[] stored = table.getMeta(metaName(region));
+    if (stored == null) {
+      throw new IllegalStateException("The table has no " + region + " path samples");
+    }
+    PathSamples samples = new PathSamples();
+    int pos = 0;
+    int count = ByteUtils.readVarInt(stored, pos);
+    pos += ByteUtils.varIntSize(count);
+    for (int i=0; i<count; i++) {
+      long id = ByteUtils.bytesToLong(stored, pos);
+      pos += Long.BYTES;
+      int length = ByteUtils.readVarInt(stored, pos);
+      pos += ByteUtils.varIntSize(length);
+      int[] path = new int[length];
+      for (int j=0; j<length; j++) {
+        path[j] = ByteUtils.readVarInt(stored, pos);
+        pos += ByteUtils.varIntSize(path[j]);
+      }
+      samples.add(id, path);
+    }
+    return samples;
+  }
+
+}
@@ -0,0 +1,293 @@
+package com.sodonnell.rocksdb.generate;
+
+import com.sodonnell.rocksdb.ByteUtils;
+import com.sodonnell.rocksdb.codec.DirectoryRecord;
+import com.sodonnell.rocksdb.codec.ValueCodec;
+import com.sodonnell.rocksdb.codec.ValueCodecs;
+import org.rocksdb.RocksDBException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+// Generates a namespace where the number of subdirectories of each directory
+// is drawn from a distribution per level, rather than the perfect tree of
+// GenerateData. Directories can also hold files, which are leaf entries with
+// their own names, and the root can hold one huge flat directory.
+//
+// Directory i of a parent is named dirName(i) and file i fileName(i), as in
+// GenerateData. As the tree is not regular, the generator samples directories
+// from it and saves them with the table as PathSamples:
+//
+//   hot  - the directories with the most children
+//   cold - directories picked evenly from all of them
+//
+// The same seed and settings always generate the same namespace.
+public class SkewedGenerateData extends GenerateData {
+
+  private final FanoutDistribution[] dirFanout;
+  private FanoutDistribution fileFanout = null;
+  private int hugeDirectory = 0;
+  private int sampleCount = 1000;
+  private long seed = 0;
+  private long maxEntries = Long.MAX_VALUE;
+
+  private Random random;
+  private long nextId;
+  private long directories;
+  private long files;
+  private int maxChildren;
+  private long bytes;
+  private final DirectoryRecord record = new DirectoryRecord();
+  private PriorityQueue<Sample> hot;
+  private List<Sample> cold;
+  private long directoriesSeen;
+
+  // dirFanout holds the distribution of subdirectories for each level, from
+  // the root down. Levels past the end of the array use the last one.
+  // Directories on the last level have no subdirectories.
+  public SkewedGenerateData(String basePath, String tableName, FanoutDistribution[] dirFanout,
+      int levels, ValueCodec codec) {
+    super(basePath, tableName, 0, levels, codec);
+    this.dirFanout = dirFanout;
+  }
+
+  // The number of files in each directory. Null, the default, gives none.
+  public SkewedGenerateData setFileFanout(FanoutDistribution fileFanout) {
+    this.fileFanout = fileFanout;
+    return this;
+  }
+
+  // Adds a directory under the root holding this many files, named after the
+  // last of the root's other subdirectories. Zero, the default, adds none.
+  public SkewedGenerateData setHugeDirectory(int hugeDirectory) {
+    this.hugeDirectory = hugeDirectory;
+    return this;
+  }
+
+  // Number of hot and of cold directories to sample
+  public SkewedGenerateData setSampleCount(int sampleCount) {
+    this.sampleCount = sampleCount;
+    return this;
+  }
+
+  public SkewedGenerateData setSeed(long seed) {
+    this.seed = seed;
+    return this;
+  }
+
+  // Stops adding children once the tree has this many entries, not counting
+  // the huge directory, to bound the size of heavily skewed trees.
+  public SkewedGenerateData setMaxEntries(long maxEntries) {
+    this.maxEntries = maxEntries;
+    return this;
+  }
+
+  // The parallel and bulk generators of GenerateData build a perfect tree
+  // from dirsPerLevel, which is 0 here, so they would write an empty table.
+  @Override
+  public void generateParallel(int threads, int splitDepth) {
+    throw new UnsupportedOperationException("SkewedGenerateData only supports generate(), "
+        + "as the parallel generator needs a fixed fan-out");
+  }
+
+  @Override
+  public int defaultSplitDepth(int threads) {
+    throw new UnsupportedOperationException("SkewedGenerateData only supports generate(), "
+        + "as the parallel generator needs a fixed fan-out");
+  }
+
+  @Override
+  public void generateBulk() {
+    throw new UnsupportedOperationException("SkewedGenerateData only supports generate(), "
+        + "as the bulk generator needs a fixed fan-out");
+  }
+
+  @Override
+  public void generate() throws RocksDBException {
+    random = new Random(seed);
+    nextId = 0;
+    hot = new PriorityQueue<>(Comparator.comparingInt(s -> s.children));
+    cold = new ArrayList<>();
+    int rootDirs = genDirectory(0, new int[0], 1);
+    if (hugeDirectory > 0) {
+      genHugeDirectory(rootDirs);
+    }
+    commitBatch(true);
+    addUserBytes(bytes);
+
+    codec.close(rocksTable);
+    rocksTable.recordKeyEncoding();
+    saveSamples(new ArrayList<>(hot), PathSamples.HOT);
+    saveSamples(cold, PathSamples.COLD);
+    rocksTable.flush();
+    System.out.println("Generated " + directories + " directories and " + files + " files, "
+        + "the largest directory has " + maxChildren + " children");
+    printWriteAmp(diskBytesWritten());
+  }
+
+  // Writes the children of a directory and then the subtree under each
+  // subdirectory. level is the level of the children, so the root's children
+  // are on level 1. Returns the number of subdirectories.
+  private int genDirectory(long id, int[] path, int level) throws RocksDBException {
+    int dirCount = level <= levels ? fanout(level).next(random) : 0;
+    int fileCount = fileFanout == null ? 0 : fileFanout.next(random);
+    long remaining = Math.max(maxEntries - nextId, 0);
+    dirCount = (int)Math.min(dirCount, remaining);
+    fileCount = (int)Math.min(fileCount, remaining - dirCount);
+
+    long firstChild = nextId + 1;
+    nextId += dirCount + fileCount;
+    for (int i=0; i<dirCount; i++) {
+      put(id, dirName(i), fillRecord(record, id, firstChild + i));
+    }
+    for (int i=0; i<fileCount; i++) {
+      put(id, fileName(i), fileRecord(id, firstChild + dirCount + i));
+    }
+    directories += dirCount;
+    files += fileCount;
+    if (path.length > 0) {
+      sample(new Sample(id, path, dirCount + fileCount));
+    }
+
+    for (int i=0; i<dirCount; i++) {
+      int[] childPath = Arrays.copyOf(path, path.length + 1);
+      childPath[path.length] = i;
+      genDirectory(firstChild + i, childPath, level + 1);
+    }
+    return dirCount;
+  }
+
+  private void genHugeDirectory(int index) throws RocksDBException {
+    long id = ++nextId;
+    put(0, dirName(index), fillRecord(record, 0, id));
+    long firstChild = nextId + 1;
+    nextId += hugeDirectory;
+    for (int i=0; i<hugeDirectory; i++) {
+      put(id, fileName(i), fileRecord(id, firstChild + i));
+    }
+    directories++;
+    files += hugeDirectory;
+    sample(new Sample(id, new int[] {index}, hugeDirectory));
+  }
+
+  private FanoutDistribution fanout(int level) {
+    return dirFanout[Math.min(level, dirFanout.length) - 1];
+  }
+
+  private DirectoryRecord fileRecord(long parentId, long id) {
+    fillRecord(record, parentId, id);
+    return record.setName(filePrefix).setPermission((short)644);
+  }
+
+  private void put(long parentId, String name, DirectoryRecord value) throws RocksDBException {
+    byte[] key = ByteUtils.dirBytes(parentId, name, keyEncoding);
+    byte[] encoded = codec.encode(value);
+    bytes += key.length + encoded.length;
+    rocksBatch.put(key, encoded);
+    commitBatch(false);
+  }
+
+  private void commitBatch(boolean force) {
+    if (force || rocksBatch.getDataSize() > 1024*1024*10) {
+      rocksTable.putBatch(rocksBatch);
+      rocksBatch.clear();
+    }
+  }
+
+  // Keeps the directories with the most children, and a reservoir sample of
+  // all the directories.
+  private void sample(Sample s) {
+    maxChildren = Math.max(maxChildren, s.children);
+    if (hot.size() < sampleCount) {
+      hot.add(s);
+    } else if (hot.peek().children < s.children) {
+      hot.poll();
+      hot.add(s);
+    }
+    directoriesSeen++;
+    if (cold.size() < sampleCount) {
+      cold.add(s);
+    } else {
+      long slot = (long)(random.nextDouble() * directoriesSeen);
+      if (slot < sampleCount) {
+        cold.set((int)slot, s);
+      }
+    }
+  }
+
+  private void saveSamples(List<Sample> samples, String region) throws RocksDBException {
+    PathSamples paths = new PathSamples();
+    for (Sample s : samples) {
+      paths.add(s.id, s.path);
+    }
+    paths.save(rocksTable, region);
+  }
+
+  private static class Sample {
+    private final long id;
+    private final int[] path;
+    private final int children;
+
+    Sample(long id, int[] path, int children) {
+      this.id = id;
+      this.path = path;
+      this.children = children;
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    String fanout = "fixed:5";
+    String fileSpec = null;
+    int levels = 5;
+    int huge = 0;
+    int samples = 1000;
+    long seed = 0;
+    long maxEntries = Long.MAX_VALUE;
+    List<String> positional = new ArrayList<>();
+    for (int i=0; i<args.length; i++) {
+      if (args[i].equals("--fanout")) {
+        fanout = args[++i];
+      } else if (args[i].equals("--files")) {
+        fileSpec = args[++i];
+      } else if (args[i].equals("--levels")) {
+        levels = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("--huge-dir")) {
+        huge = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("--samples")) {
+        samples = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("--seed")) {
+        seed = Long.parseLong(args[++i]);
+      } else if (args[i].equals("--max-entries")) {
+        maxEntries = Long.parseLong(args[++i]);
+      } else {
+        positional.add(args[i]);
+      }
+    }
+    if (positional.size() < 2) {
+      System.out.println("Usage: SkewedGenerateData /path/of/rocks/dbs <TABLE> [--levels N] "
+          + "[--fanout spec,spec,...] [--files spec] [--huge-dir N] [--samples N] [--seed S] "
+          + "[--max-entries N]");
+      System.out.println("Fan-out specs are fixed:N, uniform:MIN-MAX, zipf:MAX:S or power:MIN:ALPHA:MAX");
+      return;
+    }
+    String table = positional.get(1);
+    SkewedGenerateData gen = new SkewedGenerateData(positional.get(0), table,
+        FanoutDistribution.parseLevels(fanout), levels, ValueCodecs.create(table));
+    gen.setFileFanout(fileSpec == null ? null : FanoutDistribution.parse(fileSpec))
+        .setHugeDirectory(huge)
+        .setSampleCount(samples)
+        .setSeed(seed)
+        .setMaxEntries(maxEntries);
+    System.out.println("Generating " + table + " in " + gen.tablePath + " with fan-out " + fanout
+        + (fileSpec == null ? "" : ", files " + fileSpec) + " and " + levels + " levels");
+    long start = System.currentTimeMillis();
+    gen.generate();
+    System.out.println("Generated in " + (System.currentTimeMillis() - start) + " ms");
+    gen.close();
+  }
+
+}
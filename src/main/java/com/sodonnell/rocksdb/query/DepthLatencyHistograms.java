@@ -0,0 +1,79 @@
+package com.sodonnell.rocksdb.query;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+
+// Records the latency of each walk lookup in a histogram for its depth, so the
+// tail latency can be compared between the levels of the tree. Recording is
+// safe from many threads.
+public class DepthLatencyHistograms implements WalkObserver {
+
+  private final ConcurrentHistogram[] depths;
+  private volatile boolean recording = true;
+
+  // maxDepth is the deepest level recorded, with deeper lookups counted
+  // against it. A walk of a tree with N levels makes N + 1 lookups.
+  public DepthLatencyHistograms(int maxDepth) {
+    depths = new ConcurrentHistogram[maxDepth + 1];
+    for (int i=0; i<depths.length; i++) {
+      depths[i] = new ConcurrentHistogram(3);
+    }
+  }
+
+  @Override
+  public void onLookup(int depth, long nanos, boolean found) {
+    if (recording) {
+      depths[Math.min(depth, depths.length - 1)].recordValue(nanos);
+    }
+  }
+
+  // Lookups are dropped while recording is off, eg during warmup.
+  public void setRecording(boolean recording) {
+    this.recording = recording;
+  }
+
+  public void reset() {
+    for (Histogram h : depths) {
+      h.reset();
+    }
+  }
+
+  public Histogram getHistogram(int depth) {
+    return depths[depth];
+  }
+
+  public Histogram getTotal() {
+    Histogram total = new Histogram(3);
+    for (Histogram h : depths) {
+      total.add(h);
+    }
+    return total;
+  }
+
+  // Prints a line of percentiles for each depth and for all lookups, in
+  // microseconds.
+  public void printSummary(PrintStream out) {
+    out.println(String.format("%-6s %10s %10s %10s %10s %10s %10s %10s",
+        "depth", "count", "p50", "p90", "p99", "p99.9", "p99.99", "max"));
+    for (int i=1; i<depths.length; i++) {
+      if (depths[i].getTotalCount() > 0) {
+        printLine(out, Integer.toString(i), depths[i]);
+      }
+    }
+    printLine(out, "all", getTotal());
+  }
+
+  private static void printLine(PrintStream out, String label, Histogram h) {
+    out.println(String.format("%-6s %10d %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f",
+        label, h.getTotalCount(),
+        h.getValueAtPercentile(50) / 1000.0,
+        h.getValueAtPercentile(90) / 1000.0,
+        h.getValueAtPercentile(99) / 1000.0,
+        h.getValueAtPercentile(99.9) / 1000.0,
+        h.getValueAtPercentile(99.99) / 1000.0,
+        h.getMaxValue() / 1000.0));
+  }
+
+}
@@ -0,0 +1,83 @@
+package com.sodonnell.rocksdb.query;
+
+import com.sodonnell.rocksdb.ByteUtils;
+import com.sodonnell.rocksdb.KeyEncoding;
+import com.sodonnell.rocksdb.generate.GenerateData;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Builds walk keys (parent ID + encoded directory name) into a single reused
+// buffer. The encoded name for each child index is computed once, so building
+// a key does not allocate. A builder is not thread safe - each walking thread
+// needs its own.
+public class KeyBuilder {
+
+  private final KeyEncoding encoding;
+  private byte[][] names = new byte[0][];
+  private byte[] buffer = new byte[64];
+  private int length = 0;
+  private ByteBuffer direct = ByteBuffer.allocateDirect(64);
+
+  public KeyBuilder(KeyEncoding encoding) {
+    this.encoding = encoding;
+  }
+
+  // Sets the key to the child with the given index under parentId.
+  public KeyBuilder set(long parentId, int nameIndex) {
+    byte[] name = encodedName(nameIndex);
+    length = Long.BYTES + name.length;
+    if (buffer.length < length) {
+      buffer = new byte[length * 2];
+    }
+    ByteUtils.longToBytes(parentId, buffer, 0);
+    System.arraycopy(name, 0, buffer, Long.BYTES, name.length);
+    return this;
+  }
+
+  // Sets the key to a copy of one already encoded, eg read from a trace.
+  public KeyBuilder set(byte[] key, int offset, int keyLength) {
+    length = keyLength;
+    if (buffer.length < length) {
+      buffer = new byte[length * 2];
+    }
+    System.arraycopy(key, offset, buffer, 0, length);
+    return this;
+  }
+
+  // The buffer holding the key. Only the first getLength() bytes are valid.
+  public byte[] getBuffer() {
+    return buffer;
+  }
+
+  public int getLength() {
+    return length;
+  }
+
+  // The key copied into a reused direct buffer, for the ByteBuffer lookups.
+  public ByteBuffer asDirectBuffer() {
+    if (direct.capacity() < length) {
+      direct = ByteBuffer.allocateDirect(buffer.length);
+    }
+    direct.clear();
+    direct.put(buffer, 0, length);
+    direct.flip();
+    return direct;
+  }
+
+  public byte[] toByteArray() {
+    return Arrays.copyOf(buffer, length);
+  }
+
+  private byte[] encodedName(int index) {
+    if (index >= names.length) {
+      byte[][] grown = Arrays.copyOf(names, Math.max(index + 1, names.length * 2));
+      for (int i = names.length; i < grown.length; i++) {
+        grown[i] = encoding.encodeName(GenerateData.dirName(i));
+      }
+      names = grown;
+    }
+    return names[index];
+  }
+
+}
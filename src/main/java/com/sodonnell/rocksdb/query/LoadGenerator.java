@@ -0,0 +1,202 @@
+package com.sodonnell.rocksdb.query;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// An open loop driver for random walks. Walks are scheduled at a fixed target
+// rate, and each free thread claims the next walk in the schedule, so the
+// threads act as one pool of workers serving a single queue. Each walk's
+// latency is measured from the time it was scheduled to start, not the time a
+// thread got to it. When the table cannot keep up, walks queue and the wait shows in the
+// latency, which a closed loop hides (coordinated omission). The latency from
+// the actual start is recorded too, so the two can be compared.
+//
+// A line of throughput and percentiles is printed for each report interval,
+// and a summary at the end. Running at increasing rates finds the point where
+// the achieved rate stops following the target and the latency climbs.
+public class LoadGenerator {
+
+  private final QueryData query;
+  private final int levels;
+  private final double rate;
+  private final int threads;
+  private PathDistribution distribution;
+
+  private final Recorder corrected = new Recorder(3);
+  private final Recorder uncorrected = new Recorder(3);
+  private final LongAdder errors = new LongAdder();
+  // The next walk in the schedule to be claimed
+  private final AtomicLong nextWalk = new AtomicLong();
+  private volatile boolean running = true;
+
+  public LoadGenerator(QueryData query, int dirsPerLevel, int levels, double rate, int threads) {
+    this.query = query;
+    this.levels = levels;
+    this.rate = rate;
+    this.threads = threads;
+    this.distribution = new PathDistributions.Uniform(dirsPerLevel, levels);
+  }
+
+  // Chooses the path of each walk, uniform by default
+  public void setDistribution(PathDistribution distribution) {
+    this.distribution = distribution;
+  }
+
+  public void run(long durationSeconds, long reportIntervalSeconds) throws InterruptedException {
+    long intervalNanos = (long)(TimeUnit.SECONDS.toNanos(1) / rate);
+    long start = System.nanoTime();
+    List<Thread> workers = new ArrayList<>();
+    for (int i=0; i<threads; i++) {
+      Thread t = new Thread(() -> drive(start, intervalNanos), "load-" + i);
+      t.start();
+      workers.add(t);
+    }
+
+    Histogram totalCorrected = new Histogram(3);
+    Histogram totalUncorrected = new Histogram(3);
+    Histogram intervalCorrected = null;
+    Histogram intervalUncorrected = null;
+    System.out.println(String.format("%8s %10s %10s %10s %10s %10s %10s %10s %12s",
+        "time(s)", "walks/s", "p50", "p90", "p99", "p99.9", "max", "errors", "p99 uncorr"));
+    long end = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+    long lastReport = start;
+    long totalErrors = 0;
+    while (System.nanoTime() < end) {
+      long nextReport = Math.min(lastReport + TimeUnit.SECONDS.toNanos(reportIntervalSeconds), end);
+      LockSupport.parkNanos(nextReport - System.nanoTime());
+      long now = System.nanoTime();
+      if (now < nextReport) {
+        continue;
+      }
+      intervalCorrected = corrected.getIntervalHistogram(intervalCorrected);
+      intervalUncorrected = uncorrected.getIntervalHistogram(intervalUncorrected);
+      totalCorrected.add(intervalCorrected);
+      totalUncorrected.add(intervalUncorrected);
+      long intervalErrors = errors.sumThenReset();
+      totalErrors += intervalErrors;
+      printLine(String.format("%8.1f", (now - start) / 1e9),
+          intervalCorrected, intervalUncorrected, intervalErrors, now - lastReport);
+      lastReport = now;
+    }
+    running = false;
+    for (Thread t : workers) {
+      t.join();
+    }
+    // Walks still running at the end of the last interval
+    totalCorrected.add(corrected.getIntervalHistogram(intervalCorrected));
+    totalUncorrected.add(uncorrected.getIntervalHistogram(intervalUncorrected));
+
+    System.out.println("Summary for a target of " + rate + " walks/s with " + threads + " threads:");
+    printLine("total", totalCorrected, totalUncorrected, totalErrors + errors.sumThenReset(),
+        System.nanoTime() - start);
+    System.out.println("Corrected walk latency distribution (us):");
+    totalCorrected.outputPercentileDistribution(System.out, 1000.0);
+    System.out.println(query.getTable().getStatsReporter().summary());
+  }
+
+  // Claims the next walk in the schedule until stopped, waiting for each
+  // one's start time if the thread is early. A thread held up by a slow walk
+  // leaves the walks behind it to the other threads.
+  private void drive(long start, long intervalNanos) {
+    while (running) {
+      long n = nextWalk.getAndIncrement();
+      long intended = start + n * intervalNanos;
+      long now;
+      while ((now = System.nanoTime()) < intended) {
+        if (!running) {
+          return;
+        }
+        LockSupport.parkNanos(intended - now);
+      }
+      try {
+        int steps = query.walk(distribution);
+        if (steps != levels) {
+          errors.increment();
+        }
+      } catch (Exception e) {
+        errors.increment();
+      }
+      long done = System.nanoTime();
+      corrected.recordValue(done - intended);
+      uncorrected.recordValue(done - now);
+    }
+  }
+
+  private static void printLine(String label, Histogram correctedHist, Histogram uncorrectedHist,
+      long errorCount, long elapsedNanos) {
+    System.out.println(String.format("%8s %10.0f %10.1f %10.1f %10.1f %10.1f %10.1f %10d %12.1f",
+        label,
+        correctedHist.getTotalCount() * 1e9 / elapsedNanos,
+        correctedHist.getValueAtPercentile(50) / 1000.0,
+        correctedHist.getValueAtPercentile(90) / 1000.0,
+        correctedHist.getValueAtPercentile(99) / 1000.0,
+        correctedHist.getValueAtPercentile(99.9) / 1000.0,
+        correctedHist.getMaxValue() / 1000.0,
+        errorCount,
+        uncorrectedHist.getValueAtPercentile(99) / 1000.0));
+  }
+
+  public static void main(String[] args) {
+    double rate = 1000;
+    int threads = 1;
+    long duration = 60;
+    long interval = 5;
+    String distribution = "uniform";
+    List<String> positional = new ArrayList<>();
+    for (int i=0; i<args.length; i++) {
+      if (args[i].equals("--rate")) {
+        rate = Double.parseDouble(args[++i]);
+      } else if (args[i].equals("--threads")) {
+        threads = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("--duration")) {
+        duration = Long.parseLong(args[++i]);
+      } else if (args[i].equals("--report-interval")) {
+        interval = Long.parseLong(args[++i]);
+      } else if (args[i].equals("--distribution")) {
+        distribution = args[++i];
+      } else {
+        positional.add(args[i]);
+      }
+    }
+    args = positional.toArray(new String[0]);
+    if (args.length < 5) {
+      System.out.println("Usage: LoadGenerator /base/path/of/rocks/dbs dirs_per_level levels <TABLE> cacheMB "
+          + "[--rate walks_per_sec] [--threads N] [--duration secs] [--report-interval secs] "
+          + "[--distribution spec]");
+      return;
+    }
+    String base = args[0];
+    int dirsPerLevel = Integer.parseInt(args[1]);
+    int levels = Integer.parseInt(args[2]);
+    String table = args[3];
+    int cache = Integer.parseInt(args[4]);
+
+    Query q = new Query(base, dirsPerLevel, levels, cache);
+    QueryData query = null;
+    try {
+      query = q.getQueryObject(table);
+      System.out.println("Driving "+table+" at "+rate+" walks/s with "+threads+" threads for "+duration+"s");
+      LoadGenerator load = new LoadGenerator(query, dirsPerLevel, levels, rate, threads);
+      load.setDistribution(PathDistributions.create(distribution, dirsPerLevel, levels));
+      load.run(duration, interval);
+    } catch (Exception e) {
+      System.out.println("Exception! "+ e.getMessage() + " " + e.getCause());
+    } finally {
+      if (query != null) {
+        try {
+          query.close();
+        } catch (Exception e) {
+          System.out.println("Exception closing the table " + e.getMessage());
+        }
+      }
+    }
+  }
+
+}
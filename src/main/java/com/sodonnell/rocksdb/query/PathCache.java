@@ -0,0 +1,185 @@
+package com.sodonnell.rocksdb.query;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// A bounded cache of RocksDB key (parentId + directory name) to the inode ID
+// stored in its value. The upper levels of the tree are resolved on every walk,
+// so caching them avoids a JNI call for each of those lookups.
+//
+// The cache is split into segments, each an LRU map guarded by its own lock,
+// so concurrent walkers only contend when they hash to the same segment.
+public class PathCache {
+
+  public static final long NOT_CACHED = -1;
+
+  private final Segment[] segments;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  public PathCache(int maxEntries) {
+    this(maxEntries, 16);
+  }
+
+  public PathCache(int maxEntries, int segmentCount) {
+    if (maxEntries < segmentCount) {
+      segmentCount = 1;
+    }
+    segments = new Segment[segmentCount];
+    int perSegment = (maxEntries + segmentCount - 1) / segmentCount;
+    for (int i=0; i<segmentCount; i++) {
+      segments[i] = new Segment(perSegment);
+    }
+  }
+
+  public long get(byte[] key) {
+    return get(key, 0, key.length);
+  }
+
+  // Returns the inode ID cached for the key, or NOT_CACHED if it is not present.
+  public long get(byte[] key, int offset, int length) {
+    int hash = hash(key, offset, length);
+    Segment s = segmentFor(hash);
+    Long id;
+    synchronized (s) {
+      id = s.get(s.probe.set(key, offset, length, hash));
+    }
+    if (id == null) {
+      misses.increment();
+      return NOT_CACHED;
+    }
+    hits.increment();
+    return id;
+  }
+
+  public void put(byte[] key, long id) {
+    put(key, 0, key.length, id);
+  }
+
+  public void put(byte[] key, int offset, int length, long id) {
+    byte[] copy = new byte[length];
+    System.arraycopy(key, offset, copy, 0, length);
+    int hash = hash(copy, 0, length);
+    Segment s = segmentFor(hash);
+    synchronized (s) {
+      s.put(new Key().set(copy, 0, length, hash), id);
+    }
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  public int size() {
+    int size = 0;
+    for (Segment s : segments) {
+      synchronized (s) {
+        size += s.size();
+      }
+    }
+    return size;
+  }
+
+  public void clear() {
+    for (Segment s : segments) {
+      synchronized (s) {
+        s.clear();
+      }
+    }
+    hits.reset();
+    misses.reset();
+    evictions.reset();
+  }
+
+  @Override
+  public String toString() {
+    long h = getHits();
+    long m = getMisses();
+    double ratio = h + m == 0 ? 0 : (double)h / (h + m);
+    return String.format("PathCache size=%d hits=%d misses=%d evictions=%d hitRatio=%.4f",
+        size(), h, m, getEvictions(), ratio);
+  }
+
+  private Segment segmentFor(int hash) {
+    return segments[(hash & Integer.MAX_VALUE) % segments.length];
+  }
+
+  private static int hash(byte[] bytes, int offset, int length) {
+    int h = 1;
+    for (int i = offset; i < offset + length; i++) {
+      h = 31 * h + bytes[i];
+    }
+    return h ^ (h >>> 16);
+  }
+
+  private class Segment extends LinkedHashMap<Key, Long> {
+    private static final long serialVersionUID = 1L;
+
+    private final int capacity;
+    // Reused to look up entries while holding the segment lock, so a cache
+    // hit does not allocate.
+    private final Key probe = new Key();
+
+    Segment(int capacity) {
+      super(16, 0.75f, true);
+      this.capacity = capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, Long> eldest) {
+      if (size() > capacity) {
+        evictions.increment();
+        return true;
+      }
+      return false;
+    }
+  }
+
+  private static class Key {
+    private byte[] bytes;
+    private int offset;
+    private int length;
+    private int hash;
+
+    Key set(byte[] bytes, int offset, int length, int hash) {
+      this.bytes = bytes;
+      this.offset = offset;
+      this.length = length;
+      this.hash = hash;
+      return this;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key)o;
+      if (other.hash != hash || other.length != length) {
+        return false;
+      }
+      for (int i=0; i<length; i++) {
+        if (bytes[offset + i] != other.bytes[other.offset + i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+}
@@ -0,0 +1,15 @@
+package com.sodonnell.rocksdb.query;
+
+// Chooses the path each walk takes, as the child index to follow at each
+// level from the root. One distribution is shared by all the walking threads,
+// so implementations must be thread safe. PathDistributions creates them from
+// a spec string.
+public interface PathDistribution {
+
+  // The number of levels in each path
+  int levels();
+
+  // Fills path, which has levels() entries, with the next path to walk.
+  void next(int[] path);
+
+}
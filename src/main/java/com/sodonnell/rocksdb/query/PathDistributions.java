@@ -0,0 +1,297 @@
+package com.sodonnell.rocksdb.query;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Creates the path distributions for a tree with dirsPerLevel children in each
+// directory from a spec string:
+//
+//   uniform         every path is equally likely, as in walkRandom
+//   zipf:S          Zipfian over the paths with skew S between 0 and 1, eg
+//                   0.99. The most popular paths are scattered over the tree
+//                   by a permutation, so every path has exactly one rank.
+//   hotspot:H:O     a fraction H of the paths gets a fraction O of the walks,
+//                   eg hotspot:0.05:0.8
+//   latest:S        Zipfian with skew S, where the most popular paths are the
+//                   ones created last
+//   trace:FILE      replays the paths in FILE in order, one per line as comma
+//                   separated child indexes, starting again at the end
+//
+// The Zipfian, hotspot and latest distributions are over the paths to the
+// bottom of the tree, numbered in the order the generator creates them.
+public final class PathDistributions {
+
+  private PathDistributions() {
+  }
+
+  public static PathDistribution create(String spec, int dirsPerLevel, int levels) {
+    String[] parts = spec.split(":", 2);
+    try {
+      switch (parts[0]) {
+      case "uniform":
+        return new Uniform(dirsPerLevel, levels);
+      case "zipf":
+        return new Ranked(dirsPerLevel, levels,
+            new ZipfianGenerator(pathCount(dirsPerLevel, levels), Double.parseDouble(parts[1])));
+      case "hotspot":
+        String[] fractions = parts[1].split(":");
+        double hotSet = Double.parseDouble(fractions[0]);
+        double hotOps = Double.parseDouble(fractions[1]);
+        if (!isFraction(hotSet) || !isFraction(hotOps)) {
+          throw new IllegalArgumentException("Invalid path distribution " + spec
+              + ", the hotspot fractions must be between 0 and 1");
+        }
+        return new Hotspot(dirsPerLevel, levels, hotSet, hotOps);
+      case "latest":
+        return new Latest(dirsPerLevel, levels,
+            new ZipfianGenerator(pathCount(dirsPerLevel, levels), Double.parseDouble(parts[1])));
+      case "trace":
+        return new Trace(levels, parts[1]);
+      default:
+        break;
+      }
+    } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid path distribution " + spec, e);
+    }
+    throw new IllegalArgumentException("Unknown path distribution " + spec
+        + ", expected uniform, zipf, hotspot, latest or trace");
+  }
+
+  private static boolean isFraction(double d) {
+    return d >= 0 && d <= 1;
+  }
+
+  // The number of paths to the bottom of the tree
+  static long pathCount(int dirsPerLevel, int levels) {
+    long count = 1;
+    for (int i=0; i<levels; i++) {
+      count = Math.multiplyExact(count, dirsPerLevel);
+    }
+    return count;
+  }
+
+  // Writes path number n, counting in the order the generator creates them,
+  // as its child indexes. The first index is the most significant digit.
+  static void toPath(long n, int dirsPerLevel, int[] path) {
+    for (int i = path.length - 1; i >= 0; i--) {
+      path[i] = (int)(n % dirsPerLevel);
+      n /= dirsPerLevel;
+    }
+  }
+
+  // Spreads the ranks over all the paths, so the most popular paths are not
+  // all under the same directories. This is a permutation of [0, count):
+  // rank * multiplier + offset mod count, with the multiplier coprime to
+  // count, so each path has exactly one rank. A multiplier near count times
+  // the golden ratio puts neighbouring ranks far apart in the tree.
+  static class Scrambler {
+    private static final double GOLDEN_RATIO = 0.6180339887498949;
+
+    private final long count;
+    private final long multiplier;
+    private final long offset;
+
+    Scrambler(long count) {
+      this.count = count;
+      long m = Math.max(1, (long)(count * GOLDEN_RATIO));
+      while (gcd(m, count) != 1) {
+        m++;
+      }
+      multiplier = m;
+      offset = (long)(count * (1 - GOLDEN_RATIO));
+    }
+
+    long apply(long rank) {
+      return addMod(mulMod(rank, multiplier), offset);
+    }
+
+    private long mulMod(long a, long b) {
+      if (count <= 1L << 31) {
+        return a * b % count;
+      }
+      // Too large to multiply directly without overflowing, so double and add
+      long result = 0;
+      while (b > 0) {
+        if ((b & 1) == 1) {
+          result = addMod(result, a);
+        }
+        a = addMod(a, a);
+        b >>= 1;
+      }
+      return result;
+    }
+
+    // a + b mod count, for a and b less than count, without overflowing
+    private long addMod(long a, long b) {
+      return a >= count - b ? a - (count - b) : a + b;
+    }
+
+    private static long gcd(long a, long b) {
+      while (b != 0) {
+        long t = a % b;
+        a = b;
+        b = t;
+      }
+      return a;
+    }
+  }
+
+  public static class Uniform implements PathDistribution {
+    private final int dirsPerLevel;
+    private final int levels;
+
+    public Uniform(int dirsPerLevel, int levels) {
+      this.dirsPerLevel = dirsPerLevel;
+      this.levels = levels;
+    }
+
+    @Override
+    public int levels() {
+      return levels;
+    }
+
+    @Override
+    public void next(int[] path) {
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      for (int i=0; i<path.length; i++) {
+        path[i] = random.nextInt(dirsPerLevel);
+      }
+    }
+  }
+
+  // Picks a rank from a Zipfian generator, and walks the path with that
+  // number after scrambling it, so the popular paths are spread over the tree.
+  public static class Ranked implements PathDistribution {
+    private final int dirsPerLevel;
+    private final int levels;
+    protected final ZipfianGenerator ranks;
+    private final Scrambler scrambler;
+
+    public Ranked(int dirsPerLevel, int levels, ZipfianGenerator ranks) {
+      this.dirsPerLevel = dirsPerLevel;
+      this.levels = levels;
+      this.ranks = ranks;
+      this.scrambler = new Scrambler(ranks.getCount());
+    }
+
+    @Override
+    public int levels() {
+      return levels;
+    }
+
+    @Override
+    public void next(int[] path) {
+      toPath(pathNumber(ranks.next()), dirsPerLevel, path);
+    }
+
+    protected long pathNumber(long rank) {
+      return scrambler.apply(rank);
+    }
+  }
+
+  // The paths created last are the most popular. The generator allocates IDs
+  // depth first, so these are the paths under the last children.
+  public static class Latest extends Ranked {
+
+    public Latest(int dirsPerLevel, int levels, ZipfianGenerator ranks) {
+      super(dirsPerLevel, levels, ranks);
+    }
+
+    @Override
+    protected long pathNumber(long rank) {
+      return ranks.getCount() - 1 - rank;
+    }
+  }
+
+  public static class Hotspot implements PathDistribution {
+    private final int dirsPerLevel;
+    private final int levels;
+    private final long count;
+    private final long hotCount;
+    private final double hotFraction;
+    private final Scrambler scrambler;
+
+    public Hotspot(int dirsPerLevel, int levels, double hotSetFraction, double hotOpFraction) {
+      if (!isFraction(hotSetFraction) || !isFraction(hotOpFraction)) {
+        throw new IllegalArgumentException("The hotspot fractions must be between 0 and 1, not "
+            + hotSetFraction + " and " + hotOpFraction);
+      }
+      this.dirsPerLevel = dirsPerLevel;
+      this.levels = levels;
+      this.count = pathCount(dirsPerLevel, levels);
+      this.hotCount = Math.max(1, (long)(count * hotSetFraction));
+      this.hotFraction = hotOpFraction;
+      this.scrambler = new Scrambler(count);
+    }
+
+    @Override
+    public int levels() {
+      return levels;
+    }
+
+    @Override
+    public void next(int[] path) {
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      long rank;
+      if (random.nextDouble() < hotFraction || hotCount == count) {
+        rank = random.nextLong(hotCount);
+      } else {
+        rank = hotCount + random.nextLong(count - hotCount);
+      }
+      // The hot set is scattered over the tree rather than being one subtree
+      toPath(scrambler.apply(rank), dirsPerLevel, path);
+    }
+  }
+
+  public static class Trace implements PathDistribution {
+    private final int levels;
+    private final int[][] paths;
+    private final AtomicLong position = new AtomicLong();
+
+    public Trace(int levels, String file) {
+      this.levels = levels;
+      List<int[]> loaded = new ArrayList<>();
+      try {
+        for (String line : Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8)) {
+          line = line.trim();
+          if (line.isEmpty() || line.startsWith("#")) {
+            continue;
+          }
+          String[] indexes = line.split(",");
+          int[] path = new int[indexes.length];
+          for (int i=0; i<indexes.length; i++) {
+            path[i] = Integer.parseInt(indexes[i].trim());
+          }
+          loaded.add(path);
+        }
+      } catch (IOException e) {
+        throw new IllegalArgumentException("Unable to read the path trace " + file, e);
+      }
+      if (loaded.isEmpty()) {
+        throw new IllegalArgumentException("The path trace " + file + " has no paths");
+      }
+      paths = loaded.toArray(new int[0][]);
+    }
+
+    @Override
+    public int levels() {
+      return levels;
+    }
+
+    // Paths shorter than the tree continue down the first child
+    @Override
+    public void next(int[] path) {
+      int[] traced = paths[(int)(position.getAndIncrement() % paths.length)];
+      for (int i=0; i<path.length; i++) {
+        path[i] = i < traced.length ? traced[i] : 0;
+      }
+    }
+  }
+
+}
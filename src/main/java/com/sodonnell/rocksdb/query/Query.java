@@ -1,28 +1,50 @@
 package com.sodonnell.rocksdb.query;
 
 import com.sodonnell.rocksdb.RocksDBTable;
-import com.sodonnell.rocksdb.generate.DataGenerator;
+import com.sodonnell.rocksdb.TableConfig;
+import com.sodonnell.rocksdb.codec.ValueCodecs;
+import org.rocksdb.RocksDBException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class Query {
 
   private int dirsPerLevel;
   private int levels;
-  private int rocksCacheMB;
+  private TableConfig tableConfig;
   private String basePath;
+  // Chooses the path of each walk
+  private PathDistribution distribution;
 
   public Query(String basePath, int dirsPerLevel, int levels, int cache) {
+    this(basePath, dirsPerLevel, levels, TableConfig.fromSystemProperties(cache));
+  }
+
+  public Query(String basePath, int dirsPerLevel, int levels, TableConfig tableConfig) {
     this.basePath = basePath;
     this.dirsPerLevel = dirsPerLevel;
     this.levels = levels;
-    this.rocksCacheMB = cache;
+    this.tableConfig = tableConfig;
+    this.distribution = new PathDistributions.Uniform(dirsPerLevel, levels);
   }
 
-  public void queryForType(DataGenerator.DB_TYPE type) throws Exception {
+  public void setDistribution(PathDistribution distribution) {
+    this.distribution = distribution;
+  }
+
+  public PathDistribution getDistribution() {
+    return distribution;
+  }
+
+  public void queryForType(String type) throws Exception {
     System.out.println("Querying data for "+type);
     QueryData query = getQueryObject(type);
 
     while(true) {
-      int res = query.walkRandom(0, dirsPerLevel);
+      int res = query.walk(distribution);
       if (res != levels) {
         System.out.println("Expected to walk "+levels+" levels but only walked "+res);
         break;
@@ -30,45 +52,183 @@ public class Query {
     }
   }
 
-  public QueryData getQueryObject(DataGenerator.DB_TYPE type) throws Exception {
-    RocksDBTable t = getRocksDBTableForType(type);
-    if (type.equals(DataGenerator.DB_TYPE.LONG)
-        || type.equals(DataGenerator.DB_TYPE.PADDING_50)
-        || type.equals(DataGenerator.DB_TYPE.PADDING_100)
-        || type.equals(DataGenerator.DB_TYPE.PADDING_150)
-        || type.equals(DataGenerator.DB_TYPE.PADDING_200)
-        || type.equals(DataGenerator.DB_TYPE.PADDING_250)) {
-      return new QueryData(t);
-    } else if (type.equals(DataGenerator.DB_TYPE.FLAT_BUFFER)) {
-      return new QueryDataFlatBuffer(t);
-    } else if (type.equals(DataGenerator.DB_TYPE.FLAT_BUFFER_LONG)) {
-      return new QueryData(t);
-    } else if (type.equals(DataGenerator.DB_TYPE.PROTO)) {
-      return new QueryDataProto(t);
-    } else if (type.equals(DataGenerator.DB_TYPE.PROTO_LONG)) {
-      return new QueryData(t);
-    } else {
-      throw new Exception("unknown db type");
+  // Walks the table from a number of threads sharing one table for
+  // warmupSecs, and then counts the walks and lookups made in the next
+  // durationSecs. Prints the walks/s and lookups/s for each thread and in
+  // total.
+  public void queryForType(String type, int threads, long warmupSecs, long durationSecs)
+      throws Exception {
+    System.out.println("Querying data for "+type+" with "+threads+" threads, "
+        +warmupSecs+"s warmup, "+durationSecs+"s measurement");
+    QueryData query = getQueryObject(type);
+    try {
+      WalkResult result = runWalks(query, threads, warmupSecs, durationSecs);
+      for (int i=0; i<threads; i++) {
+        System.out.println(String.format("Thread %3d: %10.0f walks/s %12.0f lookups/s",
+            i, result.walks[i] * 1e9 / result.elapsedNanos, result.lookups[i] * 1e9 / result.elapsedNanos));
+      }
+      System.out.println(String.format("Total:      %10.0f walks/s %12.0f lookups/s",
+          result.walksPerSecond(), result.lookupsPerSecond()));
+      System.out.println(query.getTable().getStatsReporter().summary());
+      if (query.getTable().getPerfStats() != null) {
+        System.out.println("Perf context per lookup by depth, including the warmup, times in ns:");
+        query.getTable().getPerfStats().print(System.out);
+      }
+    } finally {
+      query.close();
     }
   }
 
-  public RocksDBTable getRocksDBTableForType(DataGenerator.DB_TYPE type) {
-    return new RocksDBTable(basePath+"/"+type.toString(), rocksCacheMB);
+  // Runs walks chosen by the distribution on the query from the given number
+  // of threads, and returns the walks and lookups made by each thread after
+  // the warmup. Each walk makes levels + 1 lookups, the last of which finds
+  // nothing.
+  public WalkResult runWalks(QueryData query, int threads, long warmupSecs, long durationSecs)
+      throws InterruptedException {
+    List<Worker> workers = new ArrayList<>();
+    for (int i=0; i<threads; i++) {
+      Worker w = new Worker(query, i);
+      w.start();
+      workers.add(w);
+    }
+    try {
+      TimeUnit.SECONDS.sleep(warmupSecs);
+      long start = System.nanoTime();
+      for (Worker w : workers) {
+        w.measuring = true;
+      }
+      TimeUnit.SECONDS.sleep(durationSecs);
+      for (Worker w : workers) {
+        w.running = false;
+      }
+      long elapsed = System.nanoTime() - start;
+      for (Worker w : workers) {
+        w.join();
+      }
+      WalkResult result = new WalkResult(threads, elapsed);
+      for (Worker w : workers) {
+        result.walks[w.index] = w.walks;
+        result.lookups[w.index] = w.lookups;
+      }
+      return result;
+    } finally {
+      for (Worker w : workers) {
+        w.running = false;
+        w.join();
+      }
+    }
+  }
+
+  public static class WalkResult {
+    public final long[] walks;
+    public final long[] lookups;
+    public final long elapsedNanos;
+
+    WalkResult(int threads, long elapsedNanos) {
+      this.walks = new long[threads];
+      this.lookups = new long[threads];
+      this.elapsedNanos = elapsedNanos;
+    }
+
+    public double walksPerSecond() {
+      return Arrays.stream(walks).sum() * 1e9 / elapsedNanos;
+    }
+
+    public double lookupsPerSecond() {
+      return Arrays.stream(lookups).sum() * 1e9 / elapsedNanos;
+    }
+  }
+
+  public TableConfig getTableConfig() {
+    return tableConfig;
+  }
+
+  // The table name is the name of the codec used for its values.
+  public QueryData getQueryObject(String type) throws RocksDBException {
+    return new QueryData(getRocksDBTableForType(type), ValueCodecs.create(type));
+  }
+
+  public RocksDBTable getRocksDBTableForType(String type) {
+    return new RocksDBTable(basePath+"/"+tableConfig.tableDirName(type), tableConfig);
+  }
+
+  private class Worker extends Thread {
+    private final QueryData query;
+    private final int index;
+    private volatile boolean running = true;
+    private volatile boolean measuring = false;
+    // Only written by the worker, and read once it has been joined
+    private long walks = 0;
+    private long lookups = 0;
+
+    Worker(QueryData query, int index) {
+      super("query-" + index);
+      this.query = query;
+      this.index = index;
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (running) {
+          int res = query.walk(distribution);
+          if (res != levels) {
+            System.out.println("Expected to walk "+levels+" levels but only walked "+res);
+            break;
+          }
+          if (measuring) {
+            walks++;
+            lookups += res + 1;
+          }
+        }
+      } catch (RocksDBException e) {
+        System.out.println("Exception in "+getName()+"! "+ e.getMessage());
+      }
+    }
   }
 
   public static void main(String[] args) {
+    int threads = 1;
+    long warmup = 10;
+    long duration = 0;
+    String distribution = "uniform";
+    List<String> positional = new ArrayList<>();
+    for (int i=0; i<args.length; i++) {
+      if (args[i].equals("--threads")) {
+        threads = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("--duration")) {
+        duration = Long.parseLong(args[++i]);
+      } else if (args[i].equals("--warmup")) {
+        warmup = Long.parseLong(args[++i]);
+      } else if (args[i].equals("--distribution")) {
+        distribution = args[++i];
+      } else {
+        positional.add(args[i]);
+      }
+    }
+    args = positional.toArray(new String[0]);
     if (args.length < 5) {
-      System.out.println("Usage: Query /base/path/of/rocks/dbs dirs_per_level levels <DB_TYPE> cacheMB");
+      System.out.println("Usage: Query /base/path/of/rocks/dbs dirs_per_level levels <TABLE> cacheMB "
+          + "[--threads N] [--duration secs] [--warmup secs] [--distribution spec]");
     }
     String base = args[0];
     int dirsPerLevel = Integer.parseInt(args[1]);
     int levels = Integer.parseInt(args[2]);
-    DataGenerator.DB_TYPE table = DataGenerator.DB_TYPE.valueOf(args[3]);
+    String table = args[3];
     int cache = Integer.parseInt(args[4]);
 
     Query q = new Query(base, dirsPerLevel, levels, cache);
     try {
-      q.queryForType(table);
+      q.setDistribution(PathDistributions.create(distribution, dirsPerLevel, levels));
+      // Without a duration, walk forever on one thread, eg to profile
+      if (duration > 0) {
+        q.queryForType(table, threads, warmup, duration);
+      } else {
+        if (threads > 1) {
+          System.out.println("--threads is only used with --duration, walking on one thread");
+        }
+        q.queryForType(table);
+      }
     } catch (Exception e) {
       System.out.println("Exception! "+ e.getMessage() + " " + e.getCause());
     }
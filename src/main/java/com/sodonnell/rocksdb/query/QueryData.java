@@ -1,18 +1,87 @@
 package com.sodonnell.rocksdb.query;
 
 import com.sodonnell.rocksdb.ByteUtils;
+import com.sodonnell.rocksdb.DirectoryLister;
+import com.sodonnell.rocksdb.KeyEncoding;
+import com.sodonnell.rocksdb.PerfStats;
 import com.sodonnell.rocksdb.RocksDBTable;
+import com.sodonnell.rocksdb.codec.DirectoryRecord;
+import com.sodonnell.rocksdb.codec.ValueCodec;
 import com.sodonnell.rocksdb.generate.GenerateData;
+import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongConsumer;
 
 public class QueryData {
 
   private RocksDBTable rocksTable;
+  private KeyEncoding keyEncoding;
+  private ValueCodec codec;
+  private PathCache pathCache;
+  // Walks build their keys in a per-thread buffer, so walking does not
+  // allocate a new key for each lookup.
+  private final ThreadLocal<KeyBuilder> keyBuilder;
+  // With direct reads, values are read into a per-thread direct buffer rather
+  // than a new byte[] for each lookup.
+  private boolean directReads = false;
+  private final ThreadLocal<ByteBuffer> valueBuffer =
+      ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(256));
+  // With decodeAll, every field of each value is decoded into a per-thread
+  // record, as a real lookup would, rather than just the object ID.
+  private boolean decodeAll = false;
+  private final ThreadLocal<DirectoryRecord> record = ThreadLocal.withInitial(DirectoryRecord::new);
+  // The path of each walk made with a PathDistribution
+  private final ThreadLocal<int[]> pathBuffer = ThreadLocal.withInitial(() -> new int[0]);
+  // When set, each lookup made by walkRandom is timed and reported to it
+  private WalkObserver walkObserver;
+  // The table's perf context breakdown, if enabled, which needs the depth of
+  // each lookup
+  private final PerfStats perfStats;
 
-  public QueryData(RocksDBTable table) {
+  public QueryData(RocksDBTable table, ValueCodec codec) throws RocksDBException {
     this.rocksTable = table;
+    this.codec = codec;
+    codec.open(table);
+    this.perfStats = table.getPerfStats();
+    this.keyEncoding = table.getKeyEncoding();
+    this.keyBuilder = ThreadLocal.withInitial(() -> new KeyBuilder(keyEncoding));
+  }
+
+  public RocksDBTable getTable() {
+    return rocksTable;
+  }
+
+  // When set, lookups are served from the cache where possible and only go to
+  // RocksDB on a cache miss.
+  public void setPathCache(PathCache pathCache) {
+    this.pathCache = pathCache;
+  }
+
+  public PathCache getPathCache() {
+    return pathCache;
+  }
+
+  public void setDirectReads(boolean directReads) {
+    this.directReads = directReads;
+  }
+
+  public void setDecodeAll(boolean decodeAll) {
+    this.decodeAll = decodeAll;
+  }
+
+  public void setWalkObserver(WalkObserver walkObserver) {
+    this.walkObserver = walkObserver;
+  }
+
+  public ValueCodec getCodec() {
+    return codec;
   }
 
   public void close() throws Exception {
@@ -21,36 +90,292 @@ public class QueryData {
     }
   }
 
+  public byte[] lookup(byte[] key) throws RocksDBException {
+    if (perfStats != null) {
+      perfStats.setDepth(0);
+    }
+    byte[] val = rocksTable.find(key);
+    rocksTable.getWalkMetrics().recordLookups(0, 1, val == null ? 1 : 0);
+    return val;
+  }
+
+  // Walks a path chosen by the distribution to the bottom of the tree and
+  // returns the key of the final lookup, which does not exist.
+  public byte[] missingKey(PathDistribution distribution) throws RocksDBException {
+    int[] path = new int[distribution.levels()];
+    distribution.next(path);
+    byte[] key = keyFor(0L, GenerateData.dirName(childIndex(path, 0)));
+    for (int depth = 1; ; depth++) {
+      byte[] val = rocksTable.find(key);
+      if (val == null) {
+        return key;
+      }
+      key = keyFor(findNextId(val), GenerateData.dirName(childIndex(path, depth)));
+    }
+  }
+
   // Starting at the root, will walk the directory until no more entries are
   // found. Returns the number of entries found. The actual number of lookups
   // will be one greater as it must do a lookup to find "nothing".
   public int walkRandom(int min, int max) throws RocksDBException {
-    String dirName = randomDirName(min, max);
-    byte[] key = ByteUtils.dirBytes(0L, dirName);
+    long start = rocksTable.getWalkMetrics().startWalk();
+    KeyBuilder key = keyBuilder.get().set(0L, randomIndex(min, max));
     int steps = 0;
     while (true) {
-      byte[] val = rocksTable.find(key);
-      if (val == null) {
+      if (perfStats != null) {
+        perfStats.setDepth(steps + 1);
+      }
+      long next = walkObserver == null ? resolve(key) : timedResolve(key, steps + 1);
+      if (next == PathCache.NOT_CACHED) {
       //  System.out.println("Next is null");
         break;
       }
-      long next = findNextId(val);
      // System.out.println("Found "+next);
-      key = ByteUtils.dirBytes(next, randomDirName(min, max));
+      key.set(next, randomIndex(min, max));
       steps ++;
     }
+    rocksTable.getWalkMetrics().recordWalk(steps + 1, start);
     return steps;
   }
 
+  // Walks the path of child indexes from the root, such as a path sampled by
+  // SkewedGenerateData, and returns the ID of the last directory on it, or
+  // PathCache.NOT_CACHED if part of the path does not exist.
+  public long resolvePath(int[] path) throws RocksDBException {
+    KeyBuilder key = keyBuilder.get();
+    long id = 0;
+    int lookups = 0;
+    while (lookups < path.length) {
+      if (perfStats != null) {
+        perfStats.setDepth(lookups + 1);
+      }
+      id = resolve(key.set(id, path[lookups]));
+      lookups++;
+      if (id == PathCache.NOT_CACHED) {
+        break;
+      }
+    }
+    rocksTable.getWalkMetrics().recordLookups(1, lookups, id == PathCache.NOT_CACHED ? 1 : 0);
+    return id;
+  }
+
+  // Looks up a single encoded (parent ID, name) key, such as one read from a
+  // trace, through the path cache and direct reads if they are enabled.
+  // Returns the ID stored against the key, or NOT_CACHED if it does not exist.
+  public long resolveKey(byte[] key, int length) throws RocksDBException {
+    if (perfStats != null) {
+      perfStats.setDepth(0);
+    }
+    long id = resolve(keyBuilder.get().set(key, 0, length));
+    rocksTable.getWalkMetrics().recordLookups(0, 1, id == PathCache.NOT_CACHED ? 1 : 0);
+    return id;
+  }
+
+  // Walks a path chosen by the distribution, in the same way as walkRandom.
+  // Returns the number of entries found.
+  public int walk(PathDistribution distribution) throws RocksDBException {
+    int[] path = pathBuffer.get();
+    if (path.length != distribution.levels()) {
+      path = new int[distribution.levels()];
+      pathBuffer.set(path);
+    }
+    distribution.next(path);
+    return walkPath(path);
+  }
+
+  // Walks the path of child indexes from the root, and then on down the first
+  // child until an entry is not found, so a walk to the bottom of the tree
+  // makes the same lookups as walkRandom. Returns the number of entries found.
+  public int walkPath(int[] path) throws RocksDBException {
+    long start = rocksTable.getWalkMetrics().startWalk();
+    KeyBuilder key = keyBuilder.get().set(0L, path.length > 0 ? path[0] : 0);
+    int steps = 0;
+    while (true) {
+      if (perfStats != null) {
+        perfStats.setDepth(steps + 1);
+      }
+      long next = walkObserver == null ? resolve(key) : timedResolve(key, steps + 1);
+      if (next == PathCache.NOT_CACHED) {
+        break;
+      }
+      steps ++;
+      key.set(next, steps < path.length ? path[steps] : 0);
+    }
+    rocksTable.getWalkMetrics().recordWalk(steps + 1, start);
+    return steps;
+  }
+
+  // Walks batchSize paths chosen by the distribution at the same time, going
+  // on down the first child as walkPath does. All walks are advanced one
+  // level per round and each round is resolved with a single multiGet, so a
+  // batch costs one RocksDB call per level rather than one per lookup.
+  // Returns the total number of entries found across all the walks.
+  public int walkBatch(PathDistribution distribution, int batchSize) throws RocksDBException {
+    int[][] paths = new int[batchSize][distribution.levels()];
+    // The walk each key belongs to, so the next key follows the walk's path
+    int[] walks = new int[batchSize];
+    List<byte[]> keys = new ArrayList<>(batchSize);
+    for (int i=0; i<batchSize; i++) {
+      distribution.next(paths[i]);
+      walks[i] = i;
+      keys.add(keyFor(0L, GenerateData.dirName(childIndex(paths[i], 0))));
+    }
+    int steps = 0;
+    int round = 0;
+    while (!keys.isEmpty()) {
+      round++;
+      List<byte[]> nextKeys = new ArrayList<>(keys.size());
+      int[] nextWalks = new int[keys.size()];
+      List<byte[]> lookups = keys;
+      int[] lookupWalks = walks;
+      if (pathCache != null) {
+        lookups = new ArrayList<>(keys.size());
+        lookupWalks = new int[keys.size()];
+        for (int i=0; i<keys.size(); i++) {
+          long id = pathCache.get(keys.get(i));
+          if (id == PathCache.NOT_CACHED) {
+            lookupWalks[lookups.size()] = walks[i];
+            lookups.add(keys.get(i));
+          } else {
+            nextWalks[nextKeys.size()] = walks[i];
+            nextKeys.add(keyFor(id, GenerateData.dirName(childIndex(paths[walks[i]], round))));
+            steps ++;
+          }
+        }
+      }
+      if (!lookups.isEmpty()) {
+        if (perfStats != null) {
+          // Each round is one level deeper, but the walks in a batch can
+          // have different depths when some of them come from the path cache
+          perfStats.setDepth(round);
+        }
+        List<byte[]> vals = rocksTable.findBatch(lookups);
+        for (int i=0; i<vals.size(); i++) {
+          byte[] val = vals.get(i);
+          if (val == null) {
+            continue;
+          }
+          long id = findNextId(val);
+          if (pathCache != null) {
+            pathCache.put(lookups.get(i), id);
+          }
+          nextWalks[nextKeys.size()] = lookupWalks[i];
+          nextKeys.add(keyFor(id, GenerateData.dirName(childIndex(paths[lookupWalks[i]], round))));
+          steps ++;
+        }
+      }
+      keys = nextKeys;
+      walks = nextWalks;
+    }
+    // Every walk ends with one lookup which finds nothing
+    rocksTable.getWalkMetrics().recordLookups(batchSize, steps + batchSize, batchSize);
+    return steps;
+  }
+
+  // The child to follow at a depth, continuing down the first child once the
+  // path runs out
+  private static int childIndex(int[] path, int depth) {
+    return depth < path.length ? path[depth] : 0;
+  }
+
+  // Lists every child of the directory, pageSize children per scan, and passes
+  // the ID of each child to the consumer. The values are decoded as a walk
+  // decodes them. Returns the number of children.
+  public int listDirectory(long parentId, int pageSize, LongConsumer childIds)
+      throws RocksDBException {
+    DirectoryLister lister = rocksTable.getThreadLister();
+    DirectoryLister.ChildVisitor visitor = (name, value) -> childIds.accept(findNextId(value));
+    int total = 0;
+    byte[] startAfter = null;
+    while (true) {
+      int listed = lister.listChildren(parentId, startAfter, pageSize, visitor);
+      total += listed;
+      if (listed < pageSize) {
+        return total;
+      }
+      startAfter = lister.lastName();
+    }
+  }
+
+  // Returns the inode ID stored against the key, or NOT_CACHED if the key does
+  // not exist. Negative lookups are not cached.
+  private long resolve(KeyBuilder key) throws RocksDBException {
+    if (pathCache != null) {
+      long id = pathCache.get(key.getBuffer(), 0, key.getLength());
+      if (id != PathCache.NOT_CACHED) {
+        return id;
+      }
+    }
+    long id;
+    if (directReads) {
+      ByteBuffer val = readDirect(key);
+      if (val == null) {
+        return PathCache.NOT_CACHED;
+      }
+      id = findNextId(val);
+    } else {
+      byte[] val = rocksTable.find(key.getBuffer(), 0, key.getLength());
+      if (val == null) {
+        return PathCache.NOT_CACHED;
+      }
+      id = findNextId(val);
+    }
+    if (pathCache != null) {
+      pathCache.put(key.getBuffer(), 0, key.getLength(), id);
+    }
+    return id;
+  }
+
+  private long timedResolve(KeyBuilder key, int depth) throws RocksDBException {
+    long start = System.nanoTime();
+    long id = resolve(key);
+    walkObserver.onLookup(depth, System.nanoTime() - start, id != PathCache.NOT_CACHED);
+    return id;
+  }
+
+  // Returns the thread's value buffer holding the value for the key, or null
+  // if the key does not exist.
+  private ByteBuffer readDirect(KeyBuilder key) throws RocksDBException {
+    ByteBuffer val = valueBuffer.get();
+    int size = rocksTable.find(key.asDirectBuffer(), val);
+    if (size == RocksDB.NOT_FOUND) {
+      return null;
+    }
+    if (size > val.capacity()) {
+      val = ByteBuffer.allocateDirect(size * 2);
+      valueBuffer.set(val);
+      rocksTable.find(key.asDirectBuffer(), val);
+    }
+    val.order(ByteOrder.BIG_ENDIAN);
+    return val;
+  }
+
+  private byte[] keyFor(long parentId, String name) {
+    return ByteUtils.dirBytes(parentId, name, keyEncoding);
+  }
+
   protected long findNextId(byte[] buf) {
- //   java.nio.ByteBuffer buff = java.nio.ByteBuffer.wrap(buf);
-    return ByteUtils.bytesToLong(buf, 0);
+    if (decodeAll) {
+      DirectoryRecord r = record.get();
+      codec.decode(buf, r);
+      return r.getObjectId();
+    }
+    return codec.decodeNextId(buf);
+  }
+
+  // The value is between the buffer position and limit, and the codec reads
+  // it in place where it can.
+  protected long findNextId(ByteBuffer buf) {
+    if (decodeAll) {
+      DirectoryRecord r = record.get();
+      codec.decode(buf, r);
+      return r.getObjectId();
+    }
+    return codec.decodeNextId(buf);
   }
 
-  private String randomDirName(int min, int max) {
-    int randomNum = ThreadLocalRandom.current().nextInt(min, max);
-    // TODO - This should be %2 for length of 2.
-    return GenerateData.dirPrefix+randomNum; //String.format(dirPrefix+"%01d", randomNum);
+  private int randomIndex(int min, int max) {
+    return ThreadLocalRandom.current().nextInt(min, max);
   }
 
   private String padInt(int i) {
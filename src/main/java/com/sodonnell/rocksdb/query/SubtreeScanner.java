@@ -0,0 +1,137 @@
+package com.sodonnell.rocksdb.query;
+
+import com.sodonnell.rocksdb.DirectoryLister;
+import com.sodonnell.rocksdb.RocksDBTable;
+import org.rocksdb.RocksDBException;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Visits every entry under a directory, for operations like du or a
+// recursive delete. Each directory is listed with one prefix scan, and the
+// scan of each child is a separate fork join task, so idle threads steal
+// subtrees from busy ones. Each pool thread lists with its own iterator, which
+// is closed when the scan finishes, so retired pool threads do not leave open
+// iterators pinning memtables and SST files.
+public class SubtreeScanner {
+
+  public interface EntryVisitor {
+    // Called for each entry, from many threads at once. The name and value
+    // buffers hold the encoded name and the value between the position and
+    // limit, and are reused once this returns.
+    void visit(long parentId, long id, ByteBuffer name, ByteBuffer value);
+  }
+
+  private final QueryData query;
+  private final RocksDBTable table;
+  private final ForkJoinPool pool;
+  private int pageSize = 1000;
+
+  public SubtreeScanner(QueryData query, ForkJoinPool pool) {
+    this.query = query;
+    this.table = query.getTable();
+    this.pool = pool;
+  }
+
+  // Children returned by each scan. Larger directories are listed in pages.
+  public SubtreeScanner setPageSize(int pageSize) {
+    this.pageSize = pageSize;
+    return this;
+  }
+
+  // Visits every entry below the directory, not including the directory
+  // itself. Returns the number of entries visited.
+  public long scan(long rootId, EntryVisitor visitor) {
+    Map<Thread, DirectoryLister> listers = new ConcurrentHashMap<>();
+    try {
+      return pool.invoke(new ScanTask(rootId, visitor, listers));
+    } finally {
+      for (DirectoryLister lister : listers.values()) {
+        lister.close();
+      }
+    }
+  }
+
+  private class ScanTask extends RecursiveTask<Long> {
+    private static final long serialVersionUID = 1L;
+
+    private final long parentId;
+    private final EntryVisitor visitor;
+    // The lister of each thread taking part in this scan
+    private final Map<Thread, DirectoryLister> listers;
+
+    ScanTask(long parentId, EntryVisitor visitor, Map<Thread, DirectoryLister> listers) {
+      this.parentId = parentId;
+      this.visitor = visitor;
+      this.listers = listers;
+    }
+
+    @Override
+    protected Long compute() {
+      long[] children;
+      try {
+        children = listChildren();
+      } catch (RocksDBException e) {
+        throw new RuntimeException(e);
+      }
+      if (children.length == 0) {
+        return 0L;
+      }
+      // Fork all but the last child, which this thread scans itself
+      ScanTask[] tasks = new ScanTask[children.length - 1];
+      for (int i = 0; i < tasks.length; i++) {
+        tasks[i] = new ScanTask(children[i], visitor, listers);
+        tasks[i].fork();
+      }
+      long count = children.length + new ScanTask(children[children.length - 1], visitor, listers).compute();
+      for (int i = tasks.length - 1; i >= 0; i--) {
+        count += tasks[i].join();
+      }
+      return count;
+    }
+
+    // Lists every child before forking any tasks, as the thread's lister is
+    // used again by the tasks it runs.
+    private long[] listChildren() throws RocksDBException {
+      DirectoryLister lister = listers.computeIfAbsent(Thread.currentThread(), t -> table.newLister());
+      ChildIds ids = new ChildIds(parentId, visitor);
+      byte[] startAfter = null;
+      while (lister.listChildren(parentId, startAfter, pageSize, ids) == pageSize) {
+        startAfter = lister.lastName();
+      }
+      return ids.toArray();
+    }
+  }
+
+  // Passes each child to the visitor and collects the IDs to scan next.
+  private class ChildIds implements DirectoryLister.ChildVisitor {
+    private final long parentId;
+    private final EntryVisitor visitor;
+    private long[] ids = new long[8];
+    private int count = 0;
+
+    ChildIds(long parentId, EntryVisitor visitor) {
+      this.parentId = parentId;
+      this.visitor = visitor;
+    }
+
+    @Override
+    public void visit(ByteBuffer name, ByteBuffer value) {
+      long id = query.findNextId(value);
+      visitor.visit(parentId, id, name, value);
+      if (count == ids.length) {
+        ids = Arrays.copyOf(ids, count * 2);
+      }
+      ids[count++] = id;
+    }
+
+    long[] toArray() {
+      return Arrays.copyOf(ids, count);
+    }
+  }
+
+}
@@ -0,0 +1,201 @@
+package com.sodonnell.rocksdb.query;
+
+import com.sodonnell.rocksdb.TableConfig;
+import com.sodonnell.rocksdb.TraceReader;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Replays the lookups recorded by a TraceWriter against a table. Each lookup
+// is scheduled at its recorded time divided by the speed, so speed 1 replays
+// at the recorded rate and speed 10 ten times faster. As in LoadGenerator,
+// latency is measured from the scheduled time as well as the actual start, so
+// a table that cannot keep up shows the queueing. Speed 0 replays as fast as
+// the threads can go, and then the two latencies are the same.
+//
+// The lookups are shared between the threads in turn, so each thread reads the
+// whole trace through its own cursor and runs every threads-th record. The
+// recording threads write their records in batches, so a record can be a
+// little earlier than the one before it, and is then run late.
+public class TraceReplayer {
+
+  private final QueryData query;
+  private final TraceReader trace;
+  private final double speed;
+  private final int threads;
+
+  private final Recorder corrected = new Recorder(3);
+  private final Recorder uncorrected = new Recorder(3);
+  private final LongAdder missing = new LongAdder();
+  private final LongAdder errors = new LongAdder();
+
+  public TraceReplayer(QueryData query, TraceReader trace, double speed, int threads) {
+    if (trace.getKeyEncoding() != query.getTable().getKeyEncoding()) {
+      throw new IllegalArgumentException("The trace " + trace.getFile() + " was recorded with key encoding "
+          + trace.getKeyEncoding() + " but the table uses " + query.getTable().getKeyEncoding());
+    }
+    this.query = query;
+    this.trace = trace;
+    this.speed = speed;
+    this.threads = threads;
+  }
+
+  public void run(long reportIntervalSeconds) throws InterruptedException {
+    long start = System.nanoTime();
+    List<Thread> workers = new ArrayList<>();
+    for (int i=0; i<threads; i++) {
+      int offset = i;
+      Thread t = new Thread(() -> replay(start, offset), "replay-" + i);
+      t.start();
+      workers.add(t);
+    }
+
+    Histogram totalCorrected = new Histogram(3);
+    Histogram totalUncorrected = new Histogram(3);
+    Histogram intervalCorrected = null;
+    Histogram intervalUncorrected = null;
+    System.out.println(String.format("%8s %10s %10s %10s %10s %10s %10s %10s %12s",
+        "time(s)", "lookups/s", "p50", "p90", "p99", "p99.9", "max", "missing", "p99 uncorr"));
+    long lastReport = start;
+    long totalMissing = 0;
+    int worker = 0;
+    while (worker < workers.size()) {
+      long nextReport = lastReport + TimeUnit.SECONDS.toNanos(reportIntervalSeconds);
+      // Wakes early when the last thread finishes, to print the final interval
+      while (worker < workers.size()) {
+        long wait = nextReport - System.nanoTime();
+        if (wait <= 0) {
+          break;
+        }
+        workers.get(worker).join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait)));
+        if (!workers.get(worker).isAlive()) {
+          worker++;
+        }
+      }
+      long now = System.nanoTime();
+      intervalCorrected = corrected.getIntervalHistogram(intervalCorrected);
+      intervalUncorrected = uncorrected.getIntervalHistogram(intervalUncorrected);
+      totalCorrected.add(intervalCorrected);
+      totalUncorrected.add(intervalUncorrected);
+      long intervalMissing = missing.sumThenReset();
+      totalMissing += intervalMissing;
+      printLine(String.format("%8.1f", (now - start) / 1e9),
+          intervalCorrected, intervalUncorrected, intervalMissing, now - lastReport);
+      lastReport = now;
+    }
+
+    System.out.println("Summary for " + trace.getFile() + " at "
+        + (speed > 0 ? speed + "x the recorded rate" : "full speed") + " with " + threads + " threads:");
+    printLine("total", totalCorrected, totalUncorrected, totalMissing, lastReport - start);
+    if (errors.sum() > 0) {
+      System.out.println(errors.sum() + " lookups failed");
+    }
+    System.out.println("Corrected lookup latency distribution (us):");
+    totalCorrected.outputPercentileDistribution(System.out, 1000.0);
+    System.out.println(query.getTable().getStatsReporter().summary());
+  }
+
+  // Runs records offset, offset + threads, offset + 2 * threads ... of the
+  // trace, waiting for each one's scheduled time if the thread is early.
+  private void replay(long start, int offset) {
+    TraceReader.Cursor cursor = trace.cursor();
+    for (long n = 0; cursor.next(); n++) {
+      if (n % threads != offset) {
+        continue;
+      }
+      long now = System.nanoTime();
+      long intended = now;
+      if (speed > 0) {
+        intended = start + (long)(cursor.timeMicros() * 1000 / speed);
+        while ((now = System.nanoTime()) < intended) {
+          LockSupport.parkNanos(intended - now);
+        }
+      }
+      try {
+        if (query.resolveKey(cursor.key(), cursor.keyLength()) == PathCache.NOT_CACHED) {
+          missing.increment();
+        }
+      } catch (Exception e) {
+        errors.increment();
+      }
+      long done = System.nanoTime();
+      corrected.recordValue(done - intended);
+      uncorrected.recordValue(done - now);
+    }
+  }
+
+  private static void printLine(String label, Histogram correctedHist, Histogram uncorrectedHist,
+      long missingCount, long elapsedNanos) {
+    System.out.println(String.format("%8s %10.0f %10.1f %10.1f %10.1f %10.1f %10.1f %10d %12.1f",
+        label,
+        correctedHist.getTotalCount() * 1e9 / Math.max(1, elapsedNanos),
+        correctedHist.getValueAtPercentile(50) / 1000.0,
+        correctedHist.getValueAtPercentile(90) / 1000.0,
+        correctedHist.getValueAtPercentile(99) / 1000.0,
+        correctedHist.getValueAtPercentile(99.9) / 1000.0,
+        correctedHist.getMaxValue() / 1000.0,
+        missingCount,
+        uncorrectedHist.getValueAtPercentile(99) / 1000.0));
+  }
+
+  public static void main(String[] args) {
+    double speed = 1;
+    int threads = 1;
+    long interval = 5;
+    List<String> positional = new ArrayList<>();
+    for (int i=0; i<args.length; i++) {
+      if (args[i].equals("--speed")) {
+        speed = Double.parseDouble(args[++i]);
+      } else if (args[i].equals("--threads")) {
+        threads = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("--report-interval")) {
+        interval = Long.parseLong(args[++i]);
+      } else {
+        positional.add(args[i]);
+      }
+    }
+    args = positional.toArray(new String[0]);
+    if (args.length < 4) {
+      System.out.println("Usage: TraceReplayer /base/path/of/rocks/dbs <TABLE> cacheMB trace_file "
+          + "[--speed multiple_of_recorded_rate, 0 for full speed] [--threads N] [--report-interval secs]");
+      return;
+    }
+    String base = args[0];
+    String table = args[1];
+    int cache = Integer.parseInt(args[2]);
+    String traceFile = args[3];
+
+    // Recording the replay would truncate the trace while it is mapped
+    TableConfig conf = TableConfig.fromSystemProperties(cache);
+    if (conf.getTraceDir() != null) {
+      System.out.println("Not recording the replay to " + conf.getTraceDir());
+      conf.setTraceDir(null);
+    }
+    // The tree shape is only used by the random walks, which are not run
+    Query q = new Query(base, 0, 0, conf);
+    QueryData query = null;
+    try {
+      TraceReader trace = new TraceReader(traceFile);
+      query = q.getQueryObject(table);
+      System.out.println("Replaying " + trace.countRecords() + " lookups from " + traceFile + " against "
+          + table + " with " + threads + " threads");
+      new TraceReplayer(query, trace, speed, threads).run(interval);
+    } catch (Exception e) {
+      System.out.println("Exception! "+ e.getMessage() + " " + e.getCause());
+    } finally {
+      if (query != null) {
+        try {
+          query.close();
+        } catch (Exception e) {
+          System.out.println("Exception closing the table " + e.getMessage());
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,11 @@
+package com.sodonnell.rocksdb.query;
+
+// Notified of each lookup made by QueryData.walkRandom and walkPath. The depth is the level
+// of the directory looked up, starting at 1 for the children of the root. The
+// last lookup of every walk is for a directory which does not exist, so found
+// is false.
+public interface WalkObserver {
+
+  void onLookup(int depth, long nanos, boolean found);
+
+}
@@ -0,0 +1,112 @@
+package com.sodonnell.rocksdb.codec;
+
+import junit.framework.TestCase;
+
+import java.nio.ByteBuffer;
+
+public class BinaryCodecTest extends TestCase {
+
+  static DirectoryRecord sampleRecord() {
+    return new DirectoryRecord()
+        .setObjectId(0x0102030405060708L)
+        .setParentId(-2)
+        .setUpdateId(Long.MAX_VALUE)
+        .setCreationTime(1700000000123L)
+        .setModificationTime(1700000456789L)
+        .setPermission((short)0x81ED)
+        .setName("dir_é中")
+        .setOwner("hdfs")
+        .setGroup("supergroup")
+        .addAcl("alice", DirectoryRecord.ACL_USER, DirectoryRecord.SCOPE_ACCESS, (short)7)
+        .addAcl("analysts", DirectoryRecord.ACL_GROUP, DirectoryRecord.SCOPE_DEFAULT, (short)5)
+        .addAcl("hdfs", DirectoryRecord.ACL_MASK, DirectoryRecord.SCOPE_ACCESS, (short)0xFFFF);
+  }
+
+  static void assertRecordEquals(DirectoryRecord expected, DirectoryRecord actual) {
+    assertEquals(expected.getObjectId(), actual.getObjectId());
+    assertEquals(expected.getParentId(), actual.getParentId());
+    assertEquals(expected.getUpdateId(), actual.getUpdateId());
+    assertEquals(expected.getCreationTime(), actual.getCreationTime());
+    assertEquals(expected.getModificationTime(), actual.getModificationTime());
+    assertEquals(expected.getPermission(), actual.getPermission());
+    assertEquals(expected.getName(), actual.getName());
+    assertEquals(expected.getOwner(), actual.getOwner());
+    assertEquals(expected.getGroup(), actual.getGroup());
+    assertEquals(expected.getAclCount(), actual.getAclCount());
+    for (int i=0; i<expected.getAclCount(); i++) {
+      assertEquals(expected.getAclName(i), actual.getAclName(i));
+      assertEquals(expected.getAclType(i), actual.getAclType(i));
+      assertEquals(expected.getAclScope(i), actual.getAclScope(i));
+      assertEquals(expected.getAclPermissions(i), actual.getAclPermissions(i));
+    }
+  }
+
+  // A value at a non zero offset in a larger buffer, as RocksDB can return it
+  static ByteBuffer direct(byte[] value, int offset) {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(value.length + offset + 8);
+    buffer.position(offset);
+    buffer.put(value);
+    buffer.position(offset);
+    buffer.limit(offset + value.length);
+    return buffer;
+  }
+
+  public void testCodecRoundTrip() {
+    BinaryCodec codec = new BinaryCodec();
+    DirectoryRecord expected = sampleRecord();
+    byte[] value = codec.encode(expected);
+    assertEquals(expected.getObjectId(), codec.decodeNextId(value));
+    assertEquals(expected.getObjectId(), codec.decodeNextId(direct(value, 3)));
+
+    DirectoryRecord decoded = new DirectoryRecord();
+    codec.decode(value, decoded);
+    assertRecordEquals(expected, decoded);
+    codec.decode(direct(value, 3), decoded);
+    assertRecordEquals(expected, decoded);
+  }
+
+  public void testReaderFields() {
+    DirectoryRecord expected = sampleRecord();
+    byte[] value = new BinaryCodec().encode(expected);
+    byte[] padded = new byte[value.length + 5];
+    System.arraycopy(value, 0, padded, 5, value.length);
+
+    BinaryDirectoryReader reader = new BinaryDirectoryReader();
+    assertReaderFields(expected, reader.wrap(value));
+    assertReaderFields(expected, reader.wrap(padded, 5));
+    assertReaderFields(expected, reader.wrap(direct(value, 3)));
+    assertReaderFields(expected, reader.wrap(ByteBuffer.wrap(padded, 5, value.length)));
+  }
+
+  public void testEmptyStringsAndNoAcls() {
+    BinaryCodec codec = new BinaryCodec();
+    DirectoryRecord expected = new DirectoryRecord().setObjectId(1).setName("").setOwner("").setGroup("");
+    DirectoryRecord decoded = sampleRecord();
+    codec.decode(codec.encode(expected), decoded);
+    assertRecordEquals(expected, decoded);
+  }
+
+  private static void assertReaderFields(DirectoryRecord expected, BinaryDirectoryReader reader) {
+    assertEquals(expected.getObjectId(), reader.objectId());
+    assertEquals(expected.getParentId(), reader.parentId());
+    assertEquals(expected.getUpdateId(), reader.updateId());
+    assertEquals(expected.getCreationTime(), reader.creationTime());
+    assertEquals(expected.getModificationTime(), reader.modificationTime());
+    assertEquals(expected.getPermission(), reader.permission());
+    assertEquals(expected.getName(), reader.name());
+    assertEquals(expected.getOwner(), reader.owner());
+    assertEquals(expected.getGroup(), reader.group());
+    assertEquals(expected.getAclCount(), reader.aclCount());
+    // Read backwards, so each ACL offset is worked out without the one before
+    for (int i=expected.getAclCount() - 1; i>=0; i--) {
+      assertEquals(expected.getAclName(i), reader.aclName(i));
+      assertEquals(expected.getAclType(i), reader.aclType(i));
+      assertEquals(expected.getAclScope(i), reader.aclScope(i));
+      assertEquals(expected.getAclPermissions(i), reader.aclPermissions(i));
+    }
+    DirectoryRecord decoded = new DirectoryRecord();
+    reader.readInto(decoded);
+    assertRecordEquals(expected, decoded);
+  }
+
+}
@@ -0,0 +1,90 @@
+package com.sodonnell.rocksdb.codec;
+
+import com.sodonnell.rocksdb.RocksDBTable;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.nio.file.Files;
+
+public class DictionaryBinaryCodecTest extends TestCase {
+
+  private File dir;
+
+  @Override
+  protected void setUp() throws Exception {
+    dir = Files.createTempDirectory("dictionary-codec").toFile();
+  }
+
+  @Override
+  protected void tearDown() {
+    delete(dir);
+  }
+
+  public void testRoundTrip() {
+    DictionaryBinaryCodec codec = new DictionaryBinaryCodec();
+    DirectoryRecord expected = BinaryCodecTest.sampleRecord();
+    byte[] value = codec.encode(expected);
+    assertEquals(expected.getObjectId(), codec.decodeNextId(value));
+    assertEquals(expected.getObjectId(), codec.decodeNextId(BinaryCodecTest.direct(value, 3)));
+
+    DirectoryRecord decoded = new DirectoryRecord();
+    codec.decode(value, decoded);
+    BinaryCodecTest.assertRecordEquals(expected, decoded);
+    codec.decode(BinaryCodecTest.direct(value, 3), decoded);
+    BinaryCodecTest.assertRecordEquals(expected, decoded);
+    // hdfs is both the owner and an ACL name, so has one entry
+    assertEquals(4, codec.getDictionary().size());
+  }
+
+  public void testPrincipalsSurviveReopen() throws Exception {
+    DictionaryBinaryCodec writer = new DictionaryBinaryCodec();
+    DirectoryRecord expected = BinaryCodecTest.sampleRecord();
+    byte[] value;
+    RocksDBTable table = new RocksDBTable(dir.getAbsolutePath(), 8);
+    try {
+      writer.open(table);
+      writer.encode(new DirectoryRecord().setName("other").setOwner("yarn").setGroup("hadoop"));
+      value = writer.encode(expected);
+      writer.close(table);
+    } finally {
+      table.close();
+    }
+
+    DictionaryBinaryCodec reader = new DictionaryBinaryCodec();
+    table = new RocksDBTable(dir.getAbsolutePath(), 8);
+    try {
+      reader.open(table);
+    } finally {
+      table.close();
+    }
+    assertEquals(writer.getDictionary().size(), reader.getDictionary().size());
+    for (int i=0; i<writer.getDictionary().size(); i++) {
+      assertEquals(writer.getDictionary().nameFor(i), reader.getDictionary().nameFor(i));
+      assertEquals(i, reader.getDictionary().idFor(writer.getDictionary().nameFor(i)));
+    }
+    DirectoryRecord decoded = new DirectoryRecord();
+    reader.decode(value, decoded);
+    BinaryCodecTest.assertRecordEquals(expected, decoded);
+  }
+
+  public void testUnknownPrincipal() {
+    byte[] value = new DictionaryBinaryCodec().encode(BinaryCodecTest.sampleRecord());
+    try {
+      new DictionaryBinaryCodec().decode(value, new DirectoryRecord());
+      fail("Decoded a value without its dictionary");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+}